@@ -0,0 +1,110 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.benchmark;
+
+import com.upokecenter.cbor.CBORObject;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Realistic input data shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+  /**
+   * Fixed seed so every benchmark run works on the same bytes.
+   */
+  private static final long SEED = 0x0dcc;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Builds a tagged COSE_Sign1 structure as returned by the Signing API.
+   * Protected header carries the algorithm and the KID, the payload is the 32 byte DCC hash.
+   *
+   * @param signatureLength length of the signature (64 for ES256, 256 for PS256)
+   * @return CBOR encoded COSE_Sign1 message.
+   */
+  static byte[] partialDcc(int signatureLength) {
+    Random random = new Random(SEED);
+
+    CBORObject protectedHeader = CBORObject.NewMap();
+    protectedHeader.set(1, CBORObject.FromObject(signatureLength == 64 ? -7 : -37));
+    protectedHeader.set(4, CBORObject.FromObject(randomBytes(random, 8)));
+
+    CBORObject cose = CBORObject.NewArray()
+      .Add(CBORObject.FromObject(protectedHeader.EncodeToBytes()))
+      .Add(CBORObject.NewMap())
+      .Add(CBORObject.FromObject(randomBytes(random, 32)))
+      .Add(CBORObject.FromObject(randomBytes(random, signatureLength)));
+
+    return CBORObject.FromObjectAndTag(cose, 18).EncodeToBytes();
+  }
+
+  /**
+   * Creates an encrypted DCC payload as it is uploaded by a laboratory.
+   *
+   * @param length the length of the payload in bytes.
+   * @return the payload.
+   */
+  static byte[] encryptedPayload(int length) {
+    return randomBytes(new Random(SEED + length), length);
+  }
+
+  /**
+   * Creates a base64 encoded X.509 SubjectPublicKeyInfo for the given key type.
+   *
+   * @param keyType one of RSA_2048, RSA_3072, EC_P256
+   * @return base64 encoded public key
+   */
+  static String publicKey(String keyType) throws GeneralSecurityException {
+    KeyPairGenerator keyPairGenerator;
+    switch (keyType) {
+      case "RSA_2048":
+        keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048, new SecureRandom());
+        break;
+      case "RSA_3072":
+        keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(3072, new SecureRandom());
+        break;
+      case "EC_P256":
+        keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"), new SecureRandom());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown key type " + keyType);
+    }
+
+    return Base64.getEncoder().encodeToString(keyPairGenerator.generateKeyPair().getPublic().getEncoded());
+  }
+
+  private static byte[] randomBytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+}
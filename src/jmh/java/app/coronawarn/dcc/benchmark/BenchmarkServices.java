@@ -0,0 +1,168 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.client.SigningApiClient;
+import app.coronawarn.dcc.client.SigningApiResilienceConfig;
+import app.coronawarn.dcc.client.VerificationServerClient;
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.service.DccRegistrationNotificationService;
+import app.coronawarn.dcc.service.DccRegistrationService;
+import app.coronawarn.dcc.service.DccRegistrationStatusCacheService;
+import app.coronawarn.dcc.service.DccService;
+import app.coronawarn.dcc.service.DcciGeneratorService;
+import app.coronawarn.dcc.service.HashingService;
+import app.coronawarn.dcc.service.SigningExecutor;
+import app.coronawarn.dcc.service.VerificationResultCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Wires the services of the benchmarks outside of an application context. Collaborators which are not part of the
+ * measured code are replaced by explicit stubs: the Verification Server and the Signing API answer immediately and
+ * a database which is not provided fails on first use.
+ */
+final class BenchmarkServices {
+
+  private static final String LAB_ID = "labId";
+
+  private static final int SIGNATURE_LENGTH = 64;
+
+  private BenchmarkServices() {
+  }
+
+  /**
+   * Creates a DCC Registration Service without database, e.g. to parse public keys.
+   *
+   * @param config the application config
+   * @return the service
+   */
+  static DccRegistrationService dccRegistrationService(DccApplicationConfig config) {
+    return dccRegistrationService(config, noDatabase(DccRegistrationRepository.class),
+      new DccRegistrationNotificationService(noDatabase(), config));
+  }
+
+  /**
+   * Creates a DCC Registration Service on the given database with a Verification Server stub.
+   *
+   * @param config                             the application config
+   * @param dccRegistrationRepository          the repository of the DCC Registrations
+   * @param dccRegistrationNotificationService the service publishing changes of DCC Registrations
+   * @return the service
+   */
+  static DccRegistrationService dccRegistrationService(
+    DccApplicationConfig config,
+    DccRegistrationRepository dccRegistrationRepository,
+    DccRegistrationNotificationService dccRegistrationNotificationService) {
+    return new DccRegistrationService(
+      dccRegistrationRepository,
+      verificationServerStub(),
+      dcciGeneratorService(config),
+      new DccRegistrationStatusCacheService(config),
+      dccRegistrationNotificationService,
+      new VerificationResultCacheService(config));
+  }
+
+  /**
+   * Creates a DCCI Generator Service with a checked DCCI prefix.
+   *
+   * @param config the application config
+   * @return the service
+   */
+  static DcciGeneratorService dcciGeneratorService(DccApplicationConfig config) {
+    DcciGeneratorService dcciGeneratorService = new DcciGeneratorService(config);
+    dcciGeneratorService.checkPrefix();
+    return dcciGeneratorService;
+  }
+
+  /**
+   * Creates a DCC Service without database with a Signing API stub.
+   *
+   * @param config the application config
+   * @return the service
+   */
+  static DccService dccService(DccApplicationConfig config) {
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SigningApiResilienceConfig resilienceConfig = new SigningApiResilienceConfig(config, meterRegistry);
+
+    return new DccService(
+      dccRegistrationService(config),
+      signingApiStub(),
+      new HashingService(),
+      config,
+      new SigningExecutor(config, meterRegistry, Integer.MAX_VALUE),
+      resilienceConfig.signingApiCircuitBreaker(),
+      resilienceConfig.signingApiRetry());
+  }
+
+  /**
+   * Hashed GUID of the test result of a RegistrationToken, unique per RegistrationToken.
+   */
+  private static String hashedGuid(String registrationToken) {
+    return registrationToken.replace("-", "").repeat(2);
+  }
+
+  /**
+   * Verification Server returning a positive PCR test result for every RegistrationToken.
+   */
+  private static VerificationServerClient verificationServerStub() {
+    return registrationToken -> new InternalTestResult(
+      6, LAB_ID, hashedGuid(registrationToken.getRegistrationToken()), 0);
+  }
+
+  /**
+   * Signing API returning the same COSE structure for every hash.
+   */
+  private static SigningApiClient signingApiStub() {
+    byte[] partialDcc = BenchmarkData.partialDcc(SIGNATURE_LENGTH);
+    return (hash, labIdHash, dcciHash) -> partialDcc;
+  }
+
+  /**
+   * JdbcTemplate without DataSource, fails on first use.
+   */
+  private static JdbcTemplate noDatabase() {
+    return new JdbcTemplate();
+  }
+
+  /**
+   * Repository which fails on first use.
+   */
+  private static <T> T noDatabase(Class<T> repositoryType) {
+    return repositoryType.cast(Proxy.newProxyInstance(
+      repositoryType.getClassLoader(),
+      new Class<?>[] {repositoryType},
+      (proxy, method, args) -> {
+        if (method.getDeclaringClass() == Object.class) {
+          return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> "noDatabase(" + repositoryType.getSimpleName() + ")";
+          };
+        }
+        throw new UnsupportedOperationException(
+          repositoryType.getSimpleName() + "." + method.getName() + " is not available in this benchmark");
+      }));
+  }
+}
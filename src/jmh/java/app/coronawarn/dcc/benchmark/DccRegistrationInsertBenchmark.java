@@ -0,0 +1,134 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.DccApplication;
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.service.DccRegistrationNotificationService;
+import app.coronawarn.dcc.service.DccRegistrationService;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Benchmark of {@link DccRegistrationService#createDccRegistration(String, PublicKey)} against the schema created by
+ * Liquibase, including Hibernate's saveAndFlush and the handling of an already existing RegistrationToken.
+ *
+ * <p>The application context runs against an in-memory H2 database by default. Another database (e.g. PostgreSQL)
+ * can be used with -Djmh.jdbc.url, -Djmh.jdbc.username and -Djmh.jdbc.password. The Verification Server is replaced
+ * by a stub, so only the database round-trips are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DccRegistrationInsertBenchmark {
+
+  private ConfigurableApplicationContext context;
+
+  private DccRegistrationRepository dccRegistrationRepository;
+
+  private DccRegistrationService dccRegistrationService;
+
+  private PublicKey publicKey;
+
+  private String existingRegistrationToken;
+
+  /**
+   * Starts the application context, which migrates the database with Liquibase, and creates the service on its
+   * database with a Verification Server stub.
+   */
+  @Setup
+  public void setup() throws GeneralSecurityException, DccRegistrationService.DccRegistrationException {
+    String url = System.getProperty("jmh.jdbc.url", "jdbc:h2:mem:benchmark");
+    SpringApplicationBuilder builder = new SpringApplicationBuilder(DccApplication.class)
+      .properties(
+        "server.port=0",
+        "spring.datasource.url=" + url,
+        "spring.datasource.username=" + System.getProperty("jmh.jdbc.username", "sa"),
+        "spring.datasource.password=" + System.getProperty("jmh.jdbc.password", ""));
+    if (url.startsWith("jdbc:postgresql:")) {
+      builder.properties(
+        "spring.datasource.driver-class-name=org.postgresql.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect");
+    }
+    context = builder.run();
+
+    dccRegistrationRepository = context.getBean(DccRegistrationRepository.class);
+    dccRegistrationService = BenchmarkServices.dccRegistrationService(
+      context.getBean(DccApplicationConfig.class),
+      dccRegistrationRepository,
+      context.getBean(DccRegistrationNotificationService.class));
+
+    publicKey = dccRegistrationService.parsePublicKey(BenchmarkData.publicKey("RSA_2048"));
+
+    existingRegistrationToken = UUID.randomUUID().toString();
+    dccRegistrationService.createDccRegistration(existingRegistrationToken, publicKey);
+  }
+
+  /**
+   * Removes the created DCC Registrations and stops the application context.
+   */
+  @TearDown
+  public void tearDown() {
+    dccRegistrationRepository.deleteAll();
+    context.close();
+  }
+
+  /**
+   * Creates a DCC Registration for a new RegistrationToken.
+   */
+  @Benchmark
+  public DccRegistration create() throws DccRegistrationService.DccRegistrationException {
+    return dccRegistrationService.createDccRegistration(UUID.randomUUID().toString(), publicKey);
+  }
+
+  /**
+   * Tries to create a DCC Registration for a RegistrationToken which already exists. The existing RegistrationToken
+   * is detected before the Verification Server is called.
+   */
+  @Benchmark
+  public DccRegistrationService.DccRegistrationException createExisting() {
+    try {
+      dccRegistrationService.createDccRegistration(existingRegistrationToken, publicKey);
+      throw new IllegalStateException("DCC Registration was created twice");
+    } catch (DccRegistrationService.DccRegistrationException e) {
+      return e;
+    }
+  }
+}
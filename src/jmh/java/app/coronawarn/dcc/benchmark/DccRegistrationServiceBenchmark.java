@@ -0,0 +1,71 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.service.DccRegistrationService;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DccRegistrationService#parsePublicKey(String)} which runs for every uploaded public key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DccRegistrationServiceBenchmark {
+
+  @Param({"RSA_2048", "RSA_3072", "EC_P256"})
+  private String keyType;
+
+  private DccRegistrationService dccRegistrationService;
+
+  private String publicKey;
+
+  /**
+   * Prepares the service and generates the public key.
+   */
+  @Setup
+  public void setup() throws GeneralSecurityException {
+    dccRegistrationService = BenchmarkServices.dccRegistrationService(new DccApplicationConfig());
+    publicKey = BenchmarkData.publicKey(keyType);
+  }
+
+  @Benchmark
+  public PublicKey parsePublicKey() {
+    return dccRegistrationService.parsePublicKey(publicKey);
+  }
+}
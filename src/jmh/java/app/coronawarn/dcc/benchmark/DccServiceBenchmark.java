@@ -0,0 +1,89 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.service.DccService;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DccService#replaceDccPayload(String, String)} which runs on every successful DCC claim.
+ * Compares the full CBOR decode/encode with splicing the payload into the COSE structure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DccServiceBenchmark {
+
+  @Param({"cbor", "splice"})
+  private String mode;
+
+  /**
+   * Length of the signature: 64 bytes for ES256, 256 bytes for PS256.
+   */
+  @Param({"64", "256"})
+  private int signatureLength;
+
+  /**
+   * Length of the encrypted DCC payload in bytes (upload is limited to 1000 base64 characters).
+   */
+  @Param({"256", "744"})
+  private int payloadLength;
+
+  private DccService dccService;
+
+  private String partialDcc;
+
+  private String encryptedPayload;
+
+  /**
+   * Prepares the service and the input data.
+   */
+  @Setup
+  public void setup() {
+    DccApplicationConfig config = new DccApplicationConfig();
+    config.setCosePayloadSplice("splice".equals(mode));
+
+    dccService = BenchmarkServices.dccService(config);
+    partialDcc = Base64.getEncoder().encodeToString(BenchmarkData.partialDcc(signatureLength));
+    encryptedPayload = Base64.getEncoder().encodeToString(BenchmarkData.encryptedPayload(payloadLength));
+  }
+
+  @Benchmark
+  public String replaceDccPayload() {
+    return dccService.replaceDccPayload(partialDcc, encryptedPayload);
+  }
+}
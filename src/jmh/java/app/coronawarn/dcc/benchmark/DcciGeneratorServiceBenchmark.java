@@ -0,0 +1,69 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.service.DcciGeneratorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DcciGeneratorService#newDcci()} which runs for every uploaded public key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DcciGeneratorServiceBenchmark {
+
+  @Param({"URN:UVCI:V1:DE", "URN:UVCI:01:DE:ABC123"})
+  private String dcciPrefix;
+
+  private DcciGeneratorService dcciGeneratorService;
+
+  /**
+   * Prepares the service with the configured DCCI prefix.
+   */
+  @Setup
+  public void setup() {
+    DccApplicationConfig config = new DccApplicationConfig();
+    config.setDcciPrefix(dcciPrefix);
+
+    dcciGeneratorService = BenchmarkServices.dcciGeneratorService(config);
+  }
+
+  @Benchmark
+  public String newDcci() {
+    return dcciGeneratorService.newDcci();
+  }
+}
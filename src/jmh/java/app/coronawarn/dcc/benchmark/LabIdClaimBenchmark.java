@@ -0,0 +1,221 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of concurrent LabId claims: reading the claim, counting the claims of the partner and inserting the claim
+ * compared to a single conditional insert.
+ *
+ * <p>Runs against an in-memory H2 database by default. Another database (e.g. PostgreSQL) can be used with
+ * -Djmh.jdbc.url, -Djmh.jdbc.username and -Djmh.jdbc.password.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LabIdClaimBenchmark {
+
+  private static final int PARTNERS = 16;
+
+  private static final int CLAIMS_PER_PARTNER = Integer.MAX_VALUE;
+
+  private static final String SELECT = "SELECT partner_id FROM jmh_lab_id_claim WHERE lab_id = ?";
+
+  private static final String COUNT = "SELECT COUNT(*) FROM jmh_lab_id_claim WHERE partner_id = ?";
+
+  private static final String INSERT =
+    "INSERT INTO jmh_lab_id_claim (created_at, last_used, lab_id, partner_id) VALUES (?, ?, ?, ?)";
+
+  private static final String CONDITIONAL_INSERT =
+    "INSERT INTO jmh_lab_id_claim (created_at, last_used, lab_id, partner_id) "
+      + "SELECT ?, ?, ?, ? "
+      + "WHERE NOT EXISTS (SELECT 1 FROM jmh_lab_id_claim WHERE lab_id = ?) "
+      + "AND (SELECT COUNT(*) FROM jmh_lab_id_claim WHERE partner_id = ?) < ?";
+
+  /**
+   * Creates the benchmark table once for all threads.
+   */
+  @State(Scope.Benchmark)
+  public static class Database {
+
+    private Connection connection;
+
+    /**
+     * Connects to the database and creates the benchmark table.
+     */
+    @Setup
+    public void setup() throws SQLException {
+      connection = connect();
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("DROP TABLE IF EXISTS jmh_lab_id_claim");
+        statement.execute("CREATE TABLE jmh_lab_id_claim ("
+          + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+          + "created_at TIMESTAMP NOT NULL, "
+          + "last_used TIMESTAMP NOT NULL, "
+          + "lab_id VARCHAR(64) NOT NULL CONSTRAINT uk_jmh_lab_id_claim_lab_id UNIQUE, "
+          + "partner_id VARCHAR(64) NOT NULL)");
+        statement.execute("CREATE INDEX idx_jmh_lab_id_claim_partner_id ON jmh_lab_id_claim (partner_id)");
+      }
+    }
+
+    /**
+     * Drops the benchmark table.
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("DROP TABLE jmh_lab_id_claim");
+      }
+      connection.close();
+    }
+  }
+
+  /**
+   * Database connection of a benchmark thread.
+   */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Client {
+
+    public long roundTrips;
+
+    private Connection connection;
+
+    @Setup
+    public void setup(Database database) throws SQLException {
+      connection = connect();
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      roundTrips = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+      connection.close();
+    }
+  }
+
+  private static Connection connect() throws SQLException {
+    return DriverManager.getConnection(
+      System.getProperty("jmh.jdbc.url", "jdbc:h2:mem:benchmark"),
+      System.getProperty("jmh.jdbc.username", "sa"),
+      System.getProperty("jmh.jdbc.password", ""));
+  }
+
+  private static String partnerId() {
+    return "partner" + ThreadLocalRandom.current().nextInt(PARTNERS);
+  }
+
+  private static String labId() {
+    return UUID.randomUUID().toString().replace("-", "");
+  }
+
+  /**
+   * Reads the claim, counts the claims of the partner and inserts the claim.
+   */
+  @Benchmark
+  public boolean readCountInsert(Client client) throws SQLException {
+    String partnerId = partnerId();
+    String labId = labId();
+
+    try (PreparedStatement select = client.connection.prepareStatement(SELECT)) {
+      select.setString(1, labId);
+      client.roundTrips++;
+      try (ResultSet resultSet = select.executeQuery()) {
+        if (resultSet.next()) {
+          return partnerId.equals(resultSet.getString(1));
+        }
+      }
+    }
+
+    try (PreparedStatement count = client.connection.prepareStatement(COUNT)) {
+      count.setString(1, partnerId);
+      client.roundTrips++;
+      try (ResultSet resultSet = count.executeQuery()) {
+        resultSet.next();
+        if (resultSet.getLong(1) >= CLAIMS_PER_PARTNER) {
+          return false;
+        }
+      }
+    }
+
+    try (PreparedStatement insert = client.connection.prepareStatement(INSERT)) {
+      Timestamp now = new Timestamp(System.currentTimeMillis());
+      insert.setTimestamp(1, now);
+      insert.setTimestamp(2, now);
+      insert.setString(3, labId);
+      insert.setString(4, partnerId);
+      client.roundTrips++;
+      return insert.executeUpdate() == 1;
+    }
+  }
+
+  /**
+   * Claims the LabId with a single conditional insert.
+   */
+  @Benchmark
+  public boolean conditionalInsert(Client client) throws SQLException {
+    String partnerId = partnerId();
+    String labId = labId();
+
+    try (PreparedStatement insert = client.connection.prepareStatement(CONDITIONAL_INSERT)) {
+      Timestamp now = new Timestamp(System.currentTimeMillis());
+      insert.setTimestamp(1, now);
+      insert.setTimestamp(2, now);
+      insert.setString(3, labId);
+      insert.setString(4, partnerId);
+      insert.setString(5, labId);
+      insert.setString(6, partnerId);
+      insert.setInt(7, CLAIMS_PER_PARTNER);
+      client.roundTrips++;
+      return insert.executeUpdate() == 1;
+    }
+  }
+}
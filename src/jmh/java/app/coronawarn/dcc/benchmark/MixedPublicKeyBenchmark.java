@@ -0,0 +1,101 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.service.DccRegistrationService;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link DccRegistrationService#parsePublicKey(String)} with a mixed population of RSA and EC keys as
+ * uploaded by different app versions. Runs with several threads to include the shared KeyFactory pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MixedPublicKeyBenchmark {
+
+  private static final int POPULATION_SIZE = 100;
+
+  /**
+   * Share of EC keys in percent, the remaining keys are RSA 3072 keys.
+   */
+  @Param({"0", "50", "90", "100"})
+  private int ecShare;
+
+  private DccRegistrationService dccRegistrationService;
+
+  private String[] publicKeys;
+
+  /**
+   * Position of the next key of a benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int position;
+  }
+
+  /**
+   * Prepares the service and generates the shuffled key population.
+   */
+  @Setup
+  public void setup() throws GeneralSecurityException {
+    dccRegistrationService = BenchmarkServices.dccRegistrationService(new DccApplicationConfig());
+
+    String rsaKey = BenchmarkData.publicKey("RSA_3072");
+    String ecKey = BenchmarkData.publicKey("EC_P256");
+
+    List<String> population = new ArrayList<>(POPULATION_SIZE);
+    for (int i = 0; i < POPULATION_SIZE; i++) {
+      population.add(i < ecShare ? ecKey : rsaKey);
+    }
+    Collections.shuffle(population, new Random(POPULATION_SIZE));
+    publicKeys = population.toArray(new String[0]);
+  }
+
+  @Benchmark
+  public PublicKey parsePublicKey(Cursor cursor) {
+    cursor.position = (cursor.position + 1) % POPULATION_SIZE;
+    return dccRegistrationService.parsePublicKey(publicKeys[cursor.position]);
+  }
+}
@@ -0,0 +1,204 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+package app.coronawarn.dcc.benchmark;
+
+import app.coronawarn.dcc.DccApplication;
+import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.model.RegistrationToken;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Requests per second of the Public Key upload (POST /version/v1/publicKey) through Tomcat, Hibernate/JDBC and the
+ * Feign client of the Verification Server, handled on the Tomcat thread pool compared to a virtual thread per
+ * request.
+ *
+ * <p>The Verification Server is replaced by a local HTTP server which answers after the configured latency, so the
+ * request threads block in the pooled Apache HttpClient like they do in production. The result is reported in
+ * requests per second.
+ *
+ * <p>The application context runs against an in-memory H2 database by default. Another database (e.g. PostgreSQL)
+ * can be used with -Djmh.jdbc.url, -Djmh.jdbc.username and -Djmh.jdbc.password.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+  private static final int REQUESTS = 400;
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Param({"platform", "virtual"})
+  private String threads;
+
+  /**
+   * Response time in ms of the Verification Server stub.
+   */
+  @Param({"20"})
+  private long latency;
+
+  private ConfigurableApplicationContext context;
+
+  private DccRegistrationRepository dccRegistrationRepository;
+
+  private HttpServer verificationServer;
+
+  private ExecutorService verificationServerExecutor;
+
+  private ExecutorService clientExecutor;
+
+  private HttpClient httpClient;
+
+  private URI uploadUri;
+
+  private String publicKey;
+
+  /**
+   * Starts the Verification Server stub and the application with the external profile on a random port.
+   */
+  @Setup
+  public void setup() throws IOException {
+    verificationServerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    verificationServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    verificationServer.setExecutor(verificationServerExecutor);
+    verificationServer.createContext("/version/v1/testresult", exchange -> {
+      RegistrationToken registrationToken =
+        objectMapper.readValue(exchange.getRequestBody(), RegistrationToken.class);
+      try {
+        Thread.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      byte[] response = objectMapper.writeValueAsBytes(new InternalTestResult(
+        6, "labId", registrationToken.getRegistrationToken().replace("-", "").repeat(2), 0));
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      exchange.getResponseBody().write(response);
+      exchange.close();
+    });
+    verificationServer.start();
+
+    String url = System.getProperty("jmh.jdbc.url", "jdbc:h2:mem:benchmark");
+    SpringApplicationBuilder builder = new SpringApplicationBuilder(DccApplication.class)
+      .profiles("external")
+      .properties(
+        "server.port=0",
+        "cwa.dcc.virtual-threads.enabled=" + "virtual".equals(threads),
+        "cwa.dcc.verification-server.base-url=http://localhost:" + verificationServer.getAddress().getPort(),
+        "spring.datasource.url=" + url,
+        "spring.datasource.username=" + System.getProperty("jmh.jdbc.username", "sa"),
+        "spring.datasource.password=" + System.getProperty("jmh.jdbc.password", ""));
+    if (url.startsWith("jdbc:postgresql:")) {
+      builder.properties(
+        "spring.datasource.driver-class-name=org.postgresql.Driver",
+        "spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect");
+    }
+    context = builder.run();
+    dccRegistrationRepository = context.getBean(DccRegistrationRepository.class);
+
+    int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+    uploadUri = URI.create("http://localhost:" + port + "/version/v1/publicKey");
+    clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    httpClient = HttpClient.newBuilder()
+      .version(HttpClient.Version.HTTP_1_1)
+      .executor(clientExecutor)
+      .build();
+    publicKey = BenchmarkData.publicKey("RSA_2048");
+  }
+
+  /**
+   * Removes the DCC Registrations created during the iteration.
+   */
+  @TearDown(Level.Iteration)
+  public void cleanup() {
+    dccRegistrationRepository.deleteAll();
+  }
+
+  /**
+   * Stops the application and the Verification Server stub.
+   */
+  @TearDown
+  public void tearDown() {
+    context.close();
+    verificationServer.stop(0);
+    verificationServerExecutor.shutdown();
+    clientExecutor.shutdown();
+  }
+
+  /**
+   * Sends concurrent uploads of Public Keys and waits until all of them are answered.
+   */
+  @Benchmark
+  @OperationsPerInvocation(REQUESTS)
+  public void uploadPublicKeys() {
+    CompletableFuture<?>[] responses = new CompletableFuture<?>[REQUESTS];
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpRequest request = HttpRequest.newBuilder(uploadUri)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(uploadRequest(UUID.randomUUID().toString())))
+        .build();
+      responses[i] = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+        .thenAccept(response -> {
+          if (response.statusCode() != 201) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+          }
+        });
+    }
+    CompletableFuture.allOf(responses).join();
+  }
+
+  private String uploadRequest(String registrationToken) {
+    return "{\"registrationToken\":\"" + registrationToken + "\",\"publicKey\":\"" + publicKey + "\"}";
+  }
+}
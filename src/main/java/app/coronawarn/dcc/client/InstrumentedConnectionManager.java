@@ -0,0 +1,135 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.client;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+
+/**
+ * Connection Pool for the HTTP Clients of Feign which records the time it takes to lease a connection from the pool.
+ * TLS sessions are cached to resume sessions of new connections without a full handshake.
+ */
+public class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+
+  private final Timer leaseTimer;
+
+  private InstrumentedConnectionManager(
+    Registry<ConnectionSocketFactory> socketFactoryRegistry, long timeToLive, Timer leaseTimer) {
+    super(socketFactoryRegistry, null, null, null, timeToLive, TimeUnit.MILLISECONDS);
+    this.leaseTimer = leaseTimer;
+  }
+
+  /**
+   * Creates a connection pool with the given configuration and configures the HttpClientBuilder to use it.
+   *
+   * @param name              name of the client used as tag for metrics
+   * @param config            the client configuration
+   * @param sslContext        the SSL context for HTTPS connections or null to use the default SSL context
+   * @param hostnameVerifier  the hostname verifier for HTTPS connections
+   * @param meterRegistry     registry to publish pool metrics to
+   * @param httpClientBuilder the builder of the HTTP Client
+   * @return the connection pool
+   */
+  public static InstrumentedConnectionManager configure(
+    String name,
+    DccApplicationConfig.MtlsConfiguration config,
+    SSLContext sslContext,
+    HostnameVerifier hostnameVerifier,
+    MeterRegistry meterRegistry,
+    HttpClientBuilder httpClientBuilder) {
+
+    SSLContext context = sslContext != null ? sslContext : SSLContexts.createDefault();
+    context.getClientSessionContext().setSessionCacheSize(config.getTlsSession().getCacheSize());
+    context.getClientSessionContext().setSessionTimeout(config.getTlsSession().getTimeout());
+
+    Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+      .register("http", PlainConnectionSocketFactory.getSocketFactory())
+      .register("https", new InstrumentedSslConnectionSocketFactory(
+        name,
+        context,
+        sslContext != null ? hostnameVerifier : SSLConnectionSocketFactory.getDefaultHostnameVerifier(),
+        meterRegistry))
+      .build();
+
+    Timer leaseTimer = Timer.builder("httpcomponents.httpclient.pool.lease")
+      .description("Time to lease a connection from the pool")
+      .tag("httpclient", name)
+      .register(meterRegistry);
+
+    DccApplicationConfig.ConnectionPool poolConfig = config.getConnectionPool();
+
+    InstrumentedConnectionManager connectionManager =
+      new InstrumentedConnectionManager(socketFactoryRegistry, poolConfig.getTimeToLive(), leaseTimer);
+    connectionManager.setMaxTotal(poolConfig.getMaxTotal());
+    connectionManager.setDefaultMaxPerRoute(poolConfig.getMaxPerRoute());
+    connectionManager.setValidateAfterInactivity(poolConfig.getValidateAfterInactivity());
+
+    new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+    httpClientBuilder
+      .setConnectionManager(connectionManager)
+      .evictExpiredConnections()
+      .evictIdleConnections(poolConfig.getIdleTimeout(), TimeUnit.MILLISECONDS);
+
+    return connectionManager;
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+    ConnectionRequest connectionRequest = super.requestConnection(route, state);
+
+    return new ConnectionRequest() {
+      @Override
+      public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+        long start = System.nanoTime();
+        try {
+          return connectionRequest.get(timeout, timeUnit);
+        } finally {
+          leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+      }
+
+      @Override
+      public boolean cancel() {
+        return connectionRequest.cancel();
+      }
+    };
+  }
+}
@@ -0,0 +1,84 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * SSL Socket Factory which records the duration of TLS handshakes and whether a cached TLS session was resumed.
+ */
+public class InstrumentedSslConnectionSocketFactory extends SSLConnectionSocketFactory {
+
+  private final Timer fullHandshakeTimer;
+
+  private final Timer resumedHandshakeTimer;
+
+  /**
+   * Creates the socket factory and registers the handshake timers.
+   *
+   * @param name             name of the client used as tag for metrics
+   * @param sslContext       the SSL context
+   * @param hostnameVerifier the hostname verifier
+   * @param meterRegistry    registry to publish handshake metrics to
+   */
+  public InstrumentedSslConnectionSocketFactory(
+    String name, SSLContext sslContext, HostnameVerifier hostnameVerifier, MeterRegistry meterRegistry) {
+    super(sslContext, hostnameVerifier);
+
+    fullHandshakeTimer = handshakeTimer(name, false, meterRegistry);
+    resumedHandshakeTimer = handshakeTimer(name, true, meterRegistry);
+  }
+
+  private static Timer handshakeTimer(String name, boolean resumed, MeterRegistry meterRegistry) {
+    return Timer.builder("httpcomponents.httpclient.tls.handshake")
+      .description("Time of TLS handshakes")
+      .tag("httpclient", name)
+      .tag("resumed", String.valueOf(resumed))
+      .register(meterRegistry);
+  }
+
+  @Override
+  public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+    long startMillis = System.currentTimeMillis();
+    long start = System.nanoTime();
+
+    Socket sslSocket = super.createLayeredSocket(socket, target, port, context);
+
+    long duration = System.nanoTime() - start;
+
+    // A resumed session has been created before this handshake has started
+    boolean resumed = sslSocket instanceof SSLSocket
+      && ((SSLSocket) sslSocket).getSession().getCreationTime() < startMillis;
+
+    (resumed ? resumedHandshakeTimer : fullHandshakeTimer).record(duration, TimeUnit.NANOSECONDS);
+
+    return sslSocket;
+  }
+}
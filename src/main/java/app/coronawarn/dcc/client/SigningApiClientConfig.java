@@ -24,6 +24,7 @@
 import app.coronawarn.dcc.exception.DccServerException;
 import feign.Client;
 import feign.httpclient.ApacheHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
@@ -51,6 +52,8 @@ public class SigningApiClientConfig {
 
   private final DccApplicationConfig config;
 
+  private final MeterRegistry meterRegistry;
+
   /**
    * Configure the client depending on the ssl properties.
    *
@@ -60,10 +63,13 @@ public class SigningApiClientConfig {
   public Client signingApiClient() {
     HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
 
-    if (config.getSigningApiServer().isEnableMtls()) {
-      httpClientBuilder.setSSLContext(getSslContext());
-      httpClientBuilder.setSSLHostnameVerifier(getSslHostnameVerifier());
-    }
+    InstrumentedConnectionManager.configure(
+      "signing-api",
+      config.getSigningApiServer(),
+      config.getSigningApiServer().isEnableMtls() ? getSslContext() : null,
+      getSslHostnameVerifier(),
+      meterRegistry,
+      httpClientBuilder);
 
     if (config.getSigningApiServer().getProxy().isEnabled()) {
       httpClientBuilder.setProxy(new HttpHost(
@@ -81,6 +87,7 @@ public Client signingApiClient() {
 
     // This workaround is required because of misconfiguration on signing server.
     if (config.getSigningApiServer().isConnectionCloseWorkaround()) {
+      log.warn("Connection close workaround is enabled, connections to Signing API will not be reused.");
       headers.add(new BasicHeader(HttpHeaders.CONNECTION, "Close"));
     }
 
@@ -0,0 +1,116 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.client;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class SigningApiResilienceConfig {
+
+  private static final String NAME = "signing-api";
+
+  private final DccApplicationConfig config;
+
+  private final MeterRegistry meterRegistry;
+
+  /**
+   * Creates the Circuit Breaker for calls to the Signing API.
+   * Only server errors (5xx) and IO errors are recorded as failure. The state is exported as metric.
+   *
+   * @return CircuitBreaker
+   */
+  @Bean
+  public CircuitBreaker signingApiCircuitBreaker() {
+    DccApplicationConfig.SigningCircuitBreaker circuitBreakerConfig = config.getSigning().getCircuitBreaker();
+
+    CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+      .failureRateThreshold(circuitBreakerConfig.getFailureRateThreshold())
+      .slidingWindowSize(circuitBreakerConfig.getSlidingWindowSize())
+      .minimumNumberOfCalls(circuitBreakerConfig.getMinimumNumberOfCalls())
+      .waitDurationInOpenState(Duration.ofMillis(circuitBreakerConfig.getWaitDurationInOpenState()))
+      .permittedNumberOfCallsInHalfOpenState(circuitBreakerConfig.getPermittedNumberOfCallsInHalfOpenState())
+      .recordException(SigningApiResilienceConfig::isServerError)
+      .ignoreException(e -> !isServerError(e))
+      .build());
+    TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+
+    CircuitBreaker circuitBreaker = registry.circuitBreaker(NAME);
+    circuitBreaker.getEventPublisher().onStateTransition(event ->
+      log.warn("Signing API Circuit Breaker changed state: {}", event.getStateTransition()));
+
+    if (!circuitBreakerConfig.isEnabled()) {
+      circuitBreaker.transitionToDisabledState();
+    }
+
+    return circuitBreaker;
+  }
+
+  /**
+   * Creates the Retry for calls to the Signing API.
+   * Only server errors (5xx) and IO errors are retried with exponential backoff and jitter.
+   *
+   * @return Retry
+   */
+  @Bean
+  public Retry signingApiRetry() {
+    DccApplicationConfig.SigningRetry retryConfig = config.getSigning().getRetry();
+
+    RetryRegistry registry = RetryRegistry.of(RetryConfig.custom()
+      .maxAttempts(retryConfig.getMaxAttempts())
+      .intervalFunction(IntervalFunction.ofExponentialRandomBackoff(
+        retryConfig.getInitialInterval(), retryConfig.getMultiplier(), retryConfig.getRandomizationFactor()))
+      .retryOnException(SigningApiResilienceConfig::isServerError)
+      .build());
+    TaggedRetryMetrics.ofRetryRegistry(registry).bindTo(meterRegistry);
+
+    Retry retry = registry.retry(NAME);
+    retry.getEventPublisher().onRetry(event -> log.info("Calling Signing API failed, retry #{}. Message: {}",
+      event.getNumberOfRetryAttempts(), event.getLastThrowable().getMessage()));
+
+    return retry;
+  }
+
+  /**
+   * Checks whether a call failed because of the Signing API (5xx) or the connection (IO error without status).
+   */
+  private static boolean isServerError(Throwable e) {
+    return e instanceof FeignException feignException
+      && (feignException.status() <= 0 || feignException.status() >= 500);
+  }
+}
@@ -24,6 +24,7 @@
 import app.coronawarn.dcc.exception.DccServerException;
 import feign.Client;
 import feign.httpclient.ApacheHttpClient;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import javax.net.ssl.HostnameVerifier;
@@ -47,6 +48,8 @@ public class VerificationServerClientConfig {
 
   private final DccApplicationConfig config;
 
+  private final MeterRegistry meterRegistry;
+
   /**
    * Configure the client depending on the ssl properties.
    *
@@ -56,10 +59,13 @@ public class VerificationServerClientConfig {
   public Client verificationServerClient() {
     HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
 
-    if (config.getVerificationServer().isEnableMtls()) {
-      httpClientBuilder.setSSLContext(getSslContext());
-      httpClientBuilder.setSSLHostnameVerifier(getSslHostnameVerifier());
-    }
+    InstrumentedConnectionManager.configure(
+      "verification-server",
+      config.getVerificationServer(),
+      config.getVerificationServer().isEnableMtls() ? getSslContext() : null,
+      getSslHostnameVerifier(),
+      meterRegistry,
+      httpClientBuilder);
 
     if (config.getVerificationServer().getProxy().isEnabled()) {
       httpClientBuilder.setProxy(new HttpHost(
@@ -45,8 +45,35 @@ public class DccApplicationConfig {
 
   private String dcciPrefix;
 
+  /**
+   * Replace the payload of the partial DCC by splicing the bytes of the COSE structure instead of decoding and
+   * re-encoding the whole CBOR object.
+   */
+  private boolean cosePayloadSplice = true;
+
+  /**
+   * Build the DCC with encrypted payload once after signing and store it, instead of building it on every claim.
+   */
+  private boolean precomputeDownloadDcc = false;
+
   private LabIdClaim labIdClaim = new LabIdClaim();
 
+  private ClaimCache claimCache = new ClaimCache();
+
+  private VerificationResultCache verificationResultCache = new VerificationResultCache();
+
+  private PublicKeySearch publicKeySearch = new PublicKeySearch();
+
+  private BatchUpload batchUpload = new BatchUpload();
+
+  private Signing signing = new Signing();
+
+  private AsyncUpload asyncUpload = new AsyncUpload();
+
+  private Partitioning partitioning = new Partitioning();
+
+  private VirtualThreads virtualThreads = new VirtualThreads();
+
   @Getter
   @Setter
   public static class LabIdClaim {
@@ -60,6 +87,314 @@ public static class LabIdClaim {
      * Maximum number of LabIds a partner is able to claim.
      */
     private int claimsPerPartner = 100;
+
+    private LabIdClaimCache cache = new LabIdClaimCache();
+  }
+
+  /**
+   * Cache for LabId Claims used by uploads and searches of partners.
+   */
+  @Getter
+  @Setter
+  public static class LabIdClaimCache {
+
+    /**
+     * Enable caching of LabId Claims. Last usage of a cached claim is written to database in batches.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of cached LabIds.
+     */
+    private long maximumSize = 10000;
+
+    /**
+     * Time to live of a cached LabId Claim in ms. Claims deleted by the cleanup of another instance can be served
+     * from cache until then, so it has to be kept far below the maximum age of a claim.
+     */
+    private long ttl = 600000;
+
+    /**
+     * Wait time in ms between writing the last usage of cached LabId Claims to database.
+     */
+    private long flushRate = 60000;
+  }
+
+  @Getter
+  @Setter
+  public static class PublicKeySearch {
+
+    /**
+     * Maximum number of PublicKeys returned in one page of a paginated search.
+     */
+    private int maxPageSize = 1000;
+  }
+
+  /**
+   * Limits for concurrent calls to the Signing API.
+   */
+  @Getter
+  @Setter
+  public static class Signing {
+
+    /**
+     * Maximum number of concurrent calls to the Signing API.
+     */
+    private int concurrency = 16;
+
+    /**
+     * Maximum number of calls waiting for a free slot. Further calls are rejected with HTTP Status 503.
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * Maximum time in ms a request waits for the result of its call to the Signing API (including the time waiting
+     * for a free slot). Afterwards the call is cancelled and the request is answered with HTTP Status 503.
+     */
+    private long timeout = 30000;
+
+    private SigningRetry retry = new SigningRetry();
+
+    private SigningCircuitBreaker circuitBreaker = new SigningCircuitBreaker();
+  }
+
+  /**
+   * Retry of failed calls to the Signing API. Only server errors (5xx) and IO errors are retried.
+   */
+  @Getter
+  @Setter
+  public static class SigningRetry {
+
+    /**
+     * Maximum number of attempts including the first call.
+     */
+    private int maxAttempts = 2;
+
+    /**
+     * Wait time in ms before the first retry.
+     */
+    private long initialInterval = 100;
+
+    /**
+     * Factor the wait time is multiplied with for each further retry.
+     */
+    private double multiplier = 2.0;
+
+    /**
+     * Random deviation of the wait time (0.5 means +/- 50%).
+     */
+    private double randomizationFactor = 0.5;
+  }
+
+  /**
+   * Circuit Breaker which fails fast while the Signing API is unavailable.
+   */
+  @Getter
+  @Setter
+  public static class SigningCircuitBreaker {
+
+    /**
+     * Open the circuit breaker if the failure rate reaches the threshold.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Failure rate in percent at which the circuit breaker opens.
+     */
+    private float failureRateThreshold = 50;
+
+    /**
+     * Number of recent calls used to calculate the failure rate.
+     */
+    private int slidingWindowSize = 50;
+
+    /**
+     * Minimum number of calls before the failure rate is calculated.
+     */
+    private int minimumNumberOfCalls = 20;
+
+    /**
+     * Time in ms the circuit breaker stays open before test calls are permitted.
+     */
+    private long waitDurationInOpenState = 30000;
+
+    /**
+     * Number of test calls permitted while the circuit breaker is half open.
+     */
+    private int permittedNumberOfCallsInHalfOpenState = 5;
+  }
+
+  /**
+   * Upload of DCC which are signed in background.
+   */
+  @Getter
+  @Setter
+  public static class AsyncUpload {
+
+    /**
+     * Allow labs to upload DCC asynchronously.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Wait time between signing cycles in ms.
+     */
+    private int rate = 5000;
+
+    /**
+     * Maximum number of DCC signed in one signing cycle.
+     */
+    private int batchSize = 100;
+  }
+
+  @Getter
+  @Setter
+  public static class BatchUpload {
+
+    /**
+     * Maximum number of DCC in one batch upload.
+     */
+    private int maxSize = 1000;
+
+    /**
+     * Maximum size of a batch upload request in bytes.
+     */
+    private long sizelimit = 2500000;
+
+    /**
+     * Number of DCC of a batch upload which are processed in parallel.
+     */
+    private int parallelism = 8;
+  }
+
+  /**
+   * Cache for the status of DCC Registrations polled by CWA-App.
+   */
+  @Getter
+  @Setter
+  public static class ClaimCache {
+
+    /**
+     * Enable caching of PENDING and GONE status of DCC Registrations (all statuses if notifications are enabled).
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of cached RegistrationTokens.
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * Time to live of a cached status in ms.
+     */
+    private long ttl = 5000;
+
+    private Notification notification = new Notification();
+  }
+
+  /**
+   * Cache for test results received from Verification Server when a DCC Registration is created.
+   */
+  @Getter
+  @Setter
+  public static class VerificationResultCache {
+
+    /**
+     * Enable caching of final test results and of rejected (403/404) RegistrationTokens.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Maximum number of cached RegistrationTokens.
+     */
+    private long maximumSize = 100000;
+
+    /**
+     * Time to live of a cached test result in ms.
+     */
+    private long ttl = 60000;
+
+    /**
+     * Time to live of a cached rejection in ms.
+     */
+    private long negativeTtl = 10000;
+  }
+
+  /**
+   * Invalidation of cached DCC Registrations via PostgreSQL LISTEN/NOTIFY.
+   */
+  @Getter
+  @Setter
+  public static class Notification {
+
+    /**
+     * Publish and listen for changes of DCC Registrations. Requires PostgreSQL.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Name of the notification channel.
+     */
+    private String channel = "dcc_registration_changed";
+
+    /**
+     * Time to live of a cached DCC Registration in ms while notifications are received.
+     */
+    private long ttl = 600000;
+
+    /**
+     * Maximum time to wait for notifications in ms before checking the connection.
+     */
+    private int pollTimeout = 5000;
+
+    /**
+     * Wait time in ms before reconnecting after the notification connection was lost.
+     */
+    private long reconnectDelay = 5000;
+  }
+
+  /**
+   * Monthly partitions of the DCC Registration table by creation time (PostgreSQL only).
+   * The table has to be migrated with Liquibase context "partitioned".
+   */
+  @Getter
+  @Setter
+  public static class Partitioning {
+
+    /**
+     * Enable the maintenance of partitions. Expired entities are then deleted by dropping their partition instead of
+     * deleting them row by row.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Number of future monthly partitions which are created in advance. The table has no default partition, so
+     * DCC Registrations cannot be created if the partition of the current month is missing.
+     */
+    private int premakeMonths = 2;
+
+    /**
+     * Cron expression of the partition maintenance job.
+     */
+    private String cron = "0 0 3 * * *";
+  }
+
+  /**
+   * Execution of requests on virtual threads.
+   */
+  @Getter
+  @Setter
+  public static class VirtualThreads {
+
+    /**
+     * Handle Tomcat requests and batch uploads on virtual threads.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Minimum time in ms a virtual thread has to be pinned to its carrier thread to be reported.
+     */
+    private long pinnedThreshold = 20;
   }
 
   /**
@@ -89,6 +424,26 @@ public static class Cleanup {
      * Wait time between Cleanup Cycles in ms.
      */
     private int rate = 60000;
+
+    /**
+     * Number of entities processed in one transaction (0 to process all entities of a stage in one statement).
+     */
+    private int chunkSize = 0;
+
+    /**
+     * Wait time between two chunks in ms.
+     */
+    private long chunkPause = 100;
+
+    /**
+     * Maximum runtime of a chunked Cleanup Cycle in ms. Remaining entities are processed in the next cycle.
+     */
+    private long maxRuntime = 300000;
+
+    /**
+     * Time in ms the cleanup lock is extended by after each chunk.
+     */
+    private long lockExtension = 30000;
   }
 
   /**
@@ -127,6 +482,61 @@ public static class MtlsConfiguration {
 
     boolean connectionCloseWorkaround;
 
+    private ConnectionPool connectionPool = new ConnectionPool();
+
+    private TlsSession tlsSession = new TlsSession();
+
+  }
+
+  /**
+   * Connection pool of a HTTP Client.
+   */
+  @Getter
+  @Setter
+  public static class ConnectionPool {
+
+    /**
+     * Maximum number of connections in total.
+     */
+    private int maxTotal = 50;
+
+    /**
+     * Maximum number of connections per route (host).
+     */
+    private int maxPerRoute = 20;
+
+    /**
+     * Time in ms after which idle connections are closed.
+     */
+    private long idleTimeout = 30000;
+
+    /**
+     * Time of inactivity in ms after which a connection is validated before it is leased.
+     */
+    private int validateAfterInactivity = 2000;
+
+    /**
+     * Maximum lifetime of a connection in ms (-1 for infinite lifetime).
+     */
+    private long timeToLive = 300000;
+  }
+
+  /**
+   * Client side cache of TLS sessions to resume sessions without a full handshake.
+   */
+  @Getter
+  @Setter
+  public static class TlsSession {
+
+    /**
+     * Maximum number of cached TLS sessions (0 for unlimited).
+     */
+    private int cacheSize = 1000;
+
+    /**
+     * Time in seconds a cached TLS session can be resumed (0 for unlimited).
+     */
+    private int timeout = 86400;
   }
 
   @Getter
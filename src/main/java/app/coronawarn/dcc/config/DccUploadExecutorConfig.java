@@ -0,0 +1,48 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+@Configuration
+public class DccUploadExecutorConfig {
+
+  /**
+   * Creates the executor used to process the DCC of a batch upload in parallel.
+   * The DCC are processed on virtual threads if virtual threads are enabled.
+   *
+   * @param config the application config
+   * @return ExecutorService
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService dccUploadExecutor(DccApplicationConfig config) {
+    ThreadFactory threadFactory = config.getVirtualThreads().isEnabled()
+      ? Thread.ofVirtual().name("dcc-upload-", 0).factory()
+      : new CustomizableThreadFactory("dcc-upload-");
+
+    return Executors.newFixedThreadPool(config.getBatchUpload().getParallelism(), threadFactory);
+  }
+}
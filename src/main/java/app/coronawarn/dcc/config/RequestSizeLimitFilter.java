@@ -28,6 +28,7 @@
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Component;
@@ -42,13 +43,17 @@
 @RequiredArgsConstructor
 public class RequestSizeLimitFilter extends OncePerRequestFilter {
 
+  private static final String BATCH_UPLOAD_PATH = "/version/v1/test/dcc/batch";
+
   private final DccApplicationConfig dccApplicationConfig;
 
   @Override
   protected void doFilterInternal(HttpServletRequest request,
                                   @NonNull HttpServletResponse response, @NonNull FilterChain filterChain)
     throws ServletException, IOException {
-    long maxPostSize = dccApplicationConfig.getRequest().getSizelimit();
+    long maxPostSize = isBatchUploadRequest(request)
+      ? dccApplicationConfig.getBatchUpload().getSizelimit()
+      : dccApplicationConfig.getRequest().getSizelimit();
     if (request.getContentLengthLong() > maxPostSize || isChunkedRequest(request)) {
       log.warn("The request size is too large or the request was sent via chunks.");
       response.setStatus(HttpStatus.NOT_ACCEPTABLE.value());
@@ -57,6 +62,10 @@ protected void doFilterInternal(HttpServletRequest request,
     filterChain.doFilter(request, response);
   }
 
+  private boolean isBatchUploadRequest(HttpServletRequest request) {
+    return HttpMethod.POST.matches(request.getMethod()) && request.getRequestURI().endsWith(BATCH_UPLOAD_PATH);
+  }
+
   private boolean isChunkedRequest(HttpServletRequest request) {
     String header = request.getHeader(HttpHeaders.TRANSFER_ENCODING);
 
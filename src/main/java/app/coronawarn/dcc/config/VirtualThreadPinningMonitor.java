@@ -0,0 +1,116 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports virtual threads which are pinned to their carrier thread, e.g. while blocking inside a synchronized block.
+ * Pinned virtual threads block the carrier thread and reduce the number of requests which can be handled
+ * concurrently. The pinning events are read from a JFR recording stream and exported as metric.
+ */
+@Component
+@ConditionalOnProperty("cwa.dcc.virtual-threads.enabled")
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+  private static final int MAX_FRAMES = 8;
+
+  private final DccApplicationConfig config;
+
+  private final MeterRegistry meterRegistry;
+
+  private RecordingStream recordingStream;
+
+  private Timer pinnedTimer;
+
+  /**
+   * Starts the JFR recording stream for pinning events.
+   */
+  @PostConstruct
+  public void start() {
+    pinnedTimer = Timer.builder("dcc.virtual.thread.pinned")
+      .description("Time virtual threads were pinned to their carrier thread")
+      .register(meterRegistry);
+
+    recordingStream = new RecordingStream();
+    recordingStream.enable(PINNED_EVENT)
+      .withThreshold(Duration.ofMillis(config.getVirtualThreads().getPinnedThreshold()))
+      .withStackTrace();
+    recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+    recordingStream.startAsync();
+    log.info("Started monitoring of pinned virtual threads.");
+  }
+
+  /**
+   * Stops the JFR recording stream.
+   */
+  @PreDestroy
+  public void stop() {
+    if (recordingStream != null) {
+      recordingStream.close();
+    }
+  }
+
+  /**
+   * Gets the number of pinning events received so far.
+   *
+   * @return the number of times virtual threads were pinned longer than the threshold.
+   */
+  public long getPinnedCount() {
+    return pinnedTimer.count();
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinnedTimer.record(event.getDuration());
+    log.warn("Virtual thread was pinned for {} ms at {}", event.getDuration().toMillis(),
+      formatStackTrace(event.getStackTrace()));
+  }
+
+  private static String formatStackTrace(RecordedStackTrace stackTrace) {
+    if (stackTrace == null) {
+      return "unknown location";
+    }
+
+    return stackTrace.getFrames().stream()
+      .filter(RecordedFrame::isJavaFrame)
+      .limit(MAX_FRAMES)
+      .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+        + ":" + frame.getLineNumber())
+      .collect(Collectors.joining(" <- "));
+  }
+}
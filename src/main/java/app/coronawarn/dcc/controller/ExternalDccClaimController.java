@@ -20,13 +20,15 @@
 
 package app.coronawarn.dcc.controller;
 
-import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.domain.DccRegistrationState;
+import app.coronawarn.dcc.domain.DccRegistrationStatus;
 import app.coronawarn.dcc.exception.DccServerException;
 import app.coronawarn.dcc.model.DccDownloadResponse;
 import app.coronawarn.dcc.model.DccResponse;
 import app.coronawarn.dcc.model.DccUnexpectedError;
 import app.coronawarn.dcc.model.RegistrationToken;
 import app.coronawarn.dcc.service.DccRegistrationService;
+import app.coronawarn.dcc.service.DccRegistrationStatusCacheService;
 import app.coronawarn.dcc.service.DccService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -55,6 +57,8 @@ public class ExternalDccClaimController {
 
   private final DccService dccService;
 
+  private final DccRegistrationStatusCacheService dccRegistrationStatusCacheService;
+
   /**
    * Endpoint to download DCC.
    */
@@ -92,34 +96,48 @@ public ResponseEntity<?> claimDcc(
     @RequestHeader(value = "cwa-fake", required = false) String cwaFake,
     @org.springframework.web.bind.annotation.RequestBody RegistrationToken registrationToken) {
 
-    // RegistrationToken not found
-    DccRegistration dccRegistration =
-      dccRegistrationService.findByRegistrationToken(registrationToken.getRegistrationToken()).orElseThrow(
-        () -> new DccServerException(HttpStatus.NOT_FOUND,
-          "Registration Token does not exist/ is not registered at DCC-Server."));
+    DccRegistrationStatusCacheService.Entry entry =
+      dccRegistrationStatusCacheService.get(registrationToken.getRegistrationToken())
+        .orElseGet(() -> loadDccRegistration(registrationToken.getRegistrationToken()));
 
-    if (dccRegistration.getError() != null) {
-      return ResponseEntity
-        .status(HttpStatus.INTERNAL_SERVER_ERROR)
-        .body(new DccUnexpectedError(dccRegistration.getError()));
+    switch (entry.getStatus()) {
+      case ERROR:
+        return ResponseEntity
+          .status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(new DccUnexpectedError(entry.getError()));
+      case PENDING:
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+      case GONE:
+        throw new DccServerException(HttpStatus.GONE, "DCC already cleaned up.");
+      default:
+        return ResponseEntity.status(HttpStatus.OK).body(new DccDownloadResponse(entry.getDek(), entry.getDcc()));
     }
+  }
 
-    // DCC Pending
-    if (dccRegistration.getDccHash() == null && dccRegistration.getDcc() == null) {
-      return ResponseEntity.status(HttpStatus.ACCEPTED).build();
-    }
+  private DccRegistrationStatusCacheService.Entry loadDccRegistration(String registrationToken) {
+    // Invalidations arriving while the DCC Registration is loaded prevent caching the loaded state
+    long generation = dccRegistrationStatusCacheService.currentGeneration();
 
-    // DCC already cleaned up
-    if (dccRegistration.getDccHash() != null && dccRegistration.getDcc() == null) {
-      throw new DccServerException(HttpStatus.GONE, "DCC already cleaned up.");
-    }
+    // RegistrationToken not found
+    DccRegistrationState state = dccRegistrationService.findStateByRegistrationToken(registrationToken).orElseThrow(
+      () -> new DccServerException(HttpStatus.NOT_FOUND,
+        "Registration Token does not exist/ is not registered at DCC-Server."));
+
+    DccRegistrationStatus status = DccRegistrationStatus.of(state);
+    DccRegistrationStatusCacheService.Entry entry;
 
-    dccRegistration.setDcc(
-      dccService.replaceDccPayload(dccRegistration.getDcc(), dccRegistration.getDccEncryptedPayload()));
+    if (status == DccRegistrationStatus.READY) {
+      // Use precomputed DCC if available
+      String dcc = state.getDownloadDcc() != null
+        ? state.getDownloadDcc()
+        : dccService.replaceDccPayload(state.getDcc(), state.getDccEncryptedPayload());
+
+      entry = new DccRegistrationStatusCacheService.Entry(status, null, state.getEncryptedDataEncryptionKey(), dcc);
+    } else {
+      entry = new DccRegistrationStatusCacheService.Entry(status, state.getError(), null, null);
+    }
 
-    return ResponseEntity.status(HttpStatus.OK).body(new DccDownloadResponse(
-      dccRegistration.getEncryptedDataEncryptionKey(),
-      dccRegistration.getDcc()
-    ));
+    dccRegistrationStatusCacheService.put(registrationToken, entry, generation);
+    return entry;
   }
 }
@@ -64,7 +64,10 @@ public class ExternalPublicKeyController {
     },
     requestBody = @RequestBody(content = @Content(schema = @Schema(implementation = UploadPublicKeyRequest.class))),
     responses = {
-      @ApiResponse(responseCode = "201", description = "Public Key uploaded and associated."),
+      @ApiResponse(
+        responseCode = "201",
+        description = "Public Key uploaded and associated. Also returned for a request with the same RegistrationToken"
+          + " and PublicKey while the first request is still in progress (e.g. a retry of the app)."),
       @ApiResponse(
         responseCode = "400",
         description = "Bad Request. (e.g. Wrong Format of RegistrationToken or PublicKey)."),
@@ -72,7 +75,10 @@ public class ExternalPublicKeyController {
         responseCode = "403",
         description = "RegistrationToken is not allowed to issue a DCC (e.g. Token is issued for TeleTan)."),
       @ApiResponse(responseCode = "404", description = "RegistrationToken does not exists."),
-      @ApiResponse(responseCode = "409", description = "RegistrationToken is already assigned with a PublicKey."),
+      @ApiResponse(
+        responseCode = "409",
+        description = "RegistrationToken is already assigned with a PublicKey. Also returned for a request with a"
+          + " different PublicKey while the first request is still in progress."),
       @ApiResponse(responseCode = "500", description = "Internal Server Error")
     })
   @PostMapping("")
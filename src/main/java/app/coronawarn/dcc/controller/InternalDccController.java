@@ -20,14 +20,18 @@
 
 package app.coronawarn.dcc.controller;
 
-import app.coronawarn.dcc.domain.DccErrorReason;
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.domain.DccRegistrationStatus;
 import app.coronawarn.dcc.exception.DccServerException;
+import app.coronawarn.dcc.model.DccBatchUploadRequest;
+import app.coronawarn.dcc.model.DccBatchUploadResponse;
 import app.coronawarn.dcc.model.DccUnexpectedError;
 import app.coronawarn.dcc.model.DccUploadRequest;
 import app.coronawarn.dcc.model.DccUploadResponse;
 import app.coronawarn.dcc.service.DccRegistrationService;
 import app.coronawarn.dcc.service.DccService;
+import app.coronawarn.dcc.service.DccUploadService;
 import app.coronawarn.dcc.service.LabIdClaimService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -38,17 +42,18 @@
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Pattern;
-import java.util.Base64;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @Profile("internal")
@@ -60,10 +65,12 @@ public class InternalDccController {
 
   private final DccRegistrationService dccRegistrationService;
 
-  private final DccService dccService;
+  private final DccUploadService dccUploadService;
 
   private final LabIdClaimService labIdClaimService;
 
+  private final DccApplicationConfig config;
+
   /**
    * Endpoint for inserting new DCC Registrations.
    */
@@ -74,7 +81,9 @@ public class InternalDccController {
     parameters = {
       @Parameter(name = "testId", in = ParameterIn.PATH, description = "ID of the test (hashed GUID)."),
       @Parameter(name = "X-CWA-PARTNER-ID", in = ParameterIn.HEADER, description = "PartnerID. This needs only to be"
-        + " set if DCC-Server is contacted without DCC-Proxy in between.")
+        + " set if DCC-Server is contacted without DCC-Proxy in between."),
+      @Parameter(name = "async", in = ParameterIn.QUERY, description = "Sign the DCC in background if asynchronous"
+        + " upload is enabled. The partial DCC can be retrieved with GET on the same path.")
     },
     requestBody = @RequestBody(content = @Content(schema = @Schema(implementation = DccUploadRequest.class))),
     responses = {
@@ -84,6 +93,7 @@ public class InternalDccController {
         content = @Content(
           mediaType = MediaType.APPLICATION_JSON_VALUE,
           schema = @Schema(implementation = DccUploadResponse.class))),
+      @ApiResponse(responseCode = "202", description = "DCC accepted and will be signed in background"),
       @ApiResponse(responseCode = "400", description = "Invalid Data format"),
       @ApiResponse(responseCode = "403", description = "LabId is not or cannot be assigned to Partner."),
       @ApiResponse(responseCode = "404", description = "Test does not exists"),
@@ -94,57 +104,122 @@ public class InternalDccController {
   public ResponseEntity<?> uploadDcc(
     @Valid @Pattern(regexp = "^[XxA-Fa-f0-9]([A-Fa-f0-9]{63})$") @PathVariable("testId") String testId,
     @Valid @Pattern(regexp = "^[A-Za-z0-9]{1,64}$") @RequestHeader("X-CWA-PARTNER-ID") String partnerId,
-    @Valid @org.springframework.web.bind.annotation.RequestBody DccUploadRequest uploadRequest) {
+    @Valid @org.springframework.web.bind.annotation.RequestBody DccUploadRequest uploadRequest,
+    @RequestParam(value = "async", required = false, defaultValue = "false") boolean async) {
 
-    DccRegistration dccRegistration = dccRegistrationService.findByHashedGuid(testId).orElseThrow(
-      () -> new DccServerException(HttpStatus.NOT_FOUND, "Test does not exists"));
+    DccRegistration dccRegistration = findClaimedDccRegistration(testId, partnerId);
 
-    if (!labIdClaimService.getClaim(partnerId, dccRegistration.getLabId())) {
-      throw new DccServerException(HttpStatus.FORBIDDEN, "Failed to claim LabId");
+    if (async && config.getAsyncUpload().isEnabled()) {
+      dccUploadService.accept(dccRegistration, uploadRequest, partnerId);
+      return ResponseEntity.status(HttpStatus.ACCEPTED).build();
     }
 
-    if (dccRegistration.getDccHash() != null) {
-      throw new DccServerException(HttpStatus.CONFLICT, "DCC already exists");
+    try {
+      dccRegistration = dccUploadService.upload(dccRegistration, uploadRequest, partnerId);
+    } catch (DccService.DccGenerateException e) {
+      return ResponseEntity
+        .status(HttpStatus.INTERNAL_SERVER_ERROR)
+        .body(new DccUnexpectedError(e.getReason()));
     }
 
-    try {
-      Base64.getDecoder().decode(uploadRequest.getDataEncryptionKey());
-      Base64.getDecoder().decode(uploadRequest.getEncryptedDcc());
-    } catch (IllegalArgumentException e) {
-      dccRegistrationService.setError(dccRegistration, DccErrorReason.LAB_INVALID_RESPONSE);
+    return ResponseEntity.ok(new DccUploadResponse(dccRegistration.getDcc()));
+  }
 
-      throw new DccServerException(HttpStatus.BAD_REQUEST, "Invalid Base64 in DEK or encrypted DCC.");
+  /**
+   * Endpoint for retrieving the partial DCC of an asynchronously uploaded DCC.
+   */
+  @Operation(
+    summary = "Get the partial DCC of an uploaded DCC.",
+    description = "Endpoint to get the partial DCC after the DCC has been uploaded asynchronously.",
+    tags = {"internal"},
+    parameters = {
+      @Parameter(name = "testId", in = ParameterIn.PATH, description = "ID of the test (hashed GUID)."),
+      @Parameter(name = "X-CWA-PARTNER-ID", in = ParameterIn.HEADER, description = "PartnerID. This needs only to be"
+        + " set if DCC-Server is contacted without DCC-Proxy in between.")
+    },
+    responses = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "DCC signed",
+        content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = DccUploadResponse.class))),
+      @ApiResponse(responseCode = "202", description = "DCC is not uploaded or signed yet"),
+      @ApiResponse(responseCode = "403", description = "LabId is not or cannot be assigned to Partner."),
+      @ApiResponse(responseCode = "404", description = "Test does not exists"),
+      @ApiResponse(responseCode = "410", description = "DCC already cleaned up."),
+      @ApiResponse(
+        responseCode = "500",
+        description = "Signing of DCC failed",
+        content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = DccUnexpectedError.class)))
+    })
+  @GetMapping("/{testId}/dcc")
+  public ResponseEntity<?> getDcc(
+    @Valid @Pattern(regexp = "^[XxA-Fa-f0-9]([A-Fa-f0-9]{63})$") @PathVariable("testId") String testId,
+    @Valid @Pattern(regexp = "^[A-Za-z0-9]{1,64}$") @RequestHeader("X-CWA-PARTNER-ID") String partnerId) {
+
+    DccRegistration dccRegistration = findClaimedDccRegistration(testId, partnerId);
+
+    switch (DccRegistrationStatus.of(dccRegistration)) {
+      case ERROR:
+        return ResponseEntity
+          .status(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(new DccUnexpectedError(dccRegistration.getError()));
+      case PENDING:
+        return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+      case GONE:
+        throw new DccServerException(HttpStatus.GONE, "DCC already cleaned up.");
+      default:
+        return ResponseEntity.ok(new DccUploadResponse(dccRegistration.getDcc()));
     }
+  }
 
-    dccRegistration.setDccHash(uploadRequest.getDccHash());
-    dccRegistration.setDccEncryptedPayload(uploadRequest.getEncryptedDcc());
-    dccRegistration.setEncryptedDataEncryptionKey(uploadRequest.getDataEncryptionKey());
-    dccRegistration.setPartnerId(partnerId);
+  /**
+   * Endpoint for uploading multiple DCC at once.
+   */
+  @Operation(
+    summary = "Upload multiple DCC.",
+    description = "Endpoint to upload components to build the DCC for multiple tests. The result of each upload is"
+      + " returned with the HTTP Status Code the upload would have resulted in as a single upload.",
+    tags = {"internal"},
+    parameters = {
+      @Parameter(name = "X-CWA-PARTNER-ID", in = ParameterIn.HEADER, description = "PartnerID. This needs only to be"
+        + " set if DCC-Server is contacted without DCC-Proxy in between.")
+    },
+    requestBody = @RequestBody(content = @Content(schema = @Schema(implementation = DccBatchUploadRequest.class))),
+    responses = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "DCC processed",
+        content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          schema = @Schema(implementation = DccBatchUploadResponse.class))),
+      @ApiResponse(responseCode = "400", description = "Invalid Data format or too many DCC"),
+      @ApiResponse(responseCode = "500", description = "Internal Server Error")
+    })
+  @PostMapping("/dcc/batch")
+  public ResponseEntity<DccBatchUploadResponse> uploadDccBatch(
+    @Valid @Pattern(regexp = "^[A-Za-z0-9]{1,64}$") @RequestHeader("X-CWA-PARTNER-ID") String partnerId,
+    @Valid @org.springframework.web.bind.annotation.RequestBody DccBatchUploadRequest batchUploadRequest) {
 
-    try {
-      dccRegistration = dccService.sign(dccRegistration);
-    } catch (DccService.DccGenerateException e) {
+    if (batchUploadRequest.getDccs().size() > config.getBatchUpload().getMaxSize()) {
+      throw new DccServerException(HttpStatus.BAD_REQUEST, "Too many DCC in batch upload.");
+    }
 
-      // Delete DCC information if signing failed
-      dccRegistrationService.updateDccRegistration(
-        dccRegistration,
-        null,
-        null,
-        null,
-        partnerId);
+    return ResponseEntity.ok(new DccBatchUploadResponse(
+      dccUploadService.uploadBatch(batchUploadRequest.getDccs(), partnerId)));
+  }
 
-      return ResponseEntity
-        .status(HttpStatus.INTERNAL_SERVER_ERROR)
-        .body(new DccUnexpectedError(dccRegistration.getError()));
-    }
+  private DccRegistration findClaimedDccRegistration(String testId, String partnerId) {
+    DccRegistration dccRegistration = dccRegistrationService.findByHashedGuid(testId).orElseThrow(
+      () -> new DccServerException(HttpStatus.NOT_FOUND, "Test does not exists"));
 
-    dccRegistrationService.updateDccRegistration(
-      dccRegistration,
-      uploadRequest.getDccHash(),
-      uploadRequest.getEncryptedDcc(),
-      uploadRequest.getDataEncryptionKey(),
-      partnerId);
+    if (!labIdClaimService.getClaim(partnerId, dccRegistration.getLabId())) {
+      throw new DccServerException(HttpStatus.FORBIDDEN, "Failed to claim LabId");
+    }
 
-    return ResponseEntity.ok(new DccUploadResponse(dccRegistration.getDcc()));
+    return dccRegistration;
   }
 }
@@ -93,10 +93,8 @@ public ResponseEntity<Void> claimLabId(
         .build();
     }
 
-    int remainingClaims = labIdClaimService.getRemainingClaims(partnerId);
-
     // Quota exceeded
-    if (claim.isEmpty() && remainingClaims <= 0) {
+    if (claim.isEmpty() && labIdClaimService.getRemainingClaims(partnerId) <= 0) {
       return ResponseEntity
         .status(HttpStatus.FORBIDDEN)
         .build();
@@ -105,8 +103,7 @@ public ResponseEntity<Void> claimLabId(
     // Everything is ok. Create the claim or just get it to update last used property.
     labIdClaimService.getClaim(partnerId, claimRequest.getLabId());
 
-    // update remaining Claims
-    remainingClaims = labIdClaimService.getRemainingClaims(partnerId);
+    int remainingClaims = labIdClaimService.getRemainingClaims(partnerId);
 
     return ResponseEntity
       .status(HttpStatus.NO_CONTENT)
@@ -20,11 +20,13 @@
 
 package app.coronawarn.dcc.controller;
 
-import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.PendingDccRegistration;
 import app.coronawarn.dcc.exception.DccServerException;
 import app.coronawarn.dcc.model.LabPublicKeyInfo;
 import app.coronawarn.dcc.service.DccRegistrationService;
 import app.coronawarn.dcc.service.LabIdClaimService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
@@ -34,6 +36,8 @@
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Pattern;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
@@ -45,7 +49,9 @@
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Profile("internal")
 @RestController
@@ -53,10 +59,16 @@
 @RequiredArgsConstructor
 public class InternalPublicKeyController {
 
+  private static final String NEXT_CURSOR_HEADER = "X-CWA-NEXT-CURSOR";
+
   private final DccRegistrationService dccRegistrationService;
 
   private final LabIdClaimService labIdClaimService;
 
+  private final DccApplicationConfig config;
+
+  private final ObjectMapper objectMapper;
+
   /**
    * Endpoint for inserting new DCC Registrations.
    */
@@ -67,7 +79,11 @@ public class InternalPublicKeyController {
     parameters = {
       @Parameter(name = "X-CWA-PARTNER-ID", in = ParameterIn.HEADER, description = "PartnerID. This needs only to be"
         + " set if DCC-Server is contacted without DCC-Proxy in between."),
-      @Parameter(name = "labId", in = ParameterIn.PATH, description = "ID of the laboratory to search for.")
+      @Parameter(name = "labId", in = ParameterIn.PATH, description = "ID of the laboratory to search for."),
+      @Parameter(name = "cursor", in = ParameterIn.QUERY, description = "Return only Public Keys after the given"
+        + " cursor. The cursor of the next page is returned in header " + NEXT_CURSOR_HEADER + "."),
+      @Parameter(name = "limit", in = ParameterIn.QUERY, description = "Maximum number of Public Keys to return."
+        + " If neither cursor nor limit is set all Public Keys are returned.")
     },
     responses = {
       @ApiResponse(
@@ -76,26 +92,99 @@ public class InternalPublicKeyController {
         content = @Content(
           mediaType = MediaType.APPLICATION_JSON_VALUE,
           array = @ArraySchema(schema = @Schema(implementation = LabPublicKeyInfo.class)))),
+      @ApiResponse(responseCode = "400", description = "Invalid limit."),
       @ApiResponse(responseCode = "500", description = "Internal Server Error"),
       @ApiResponse(responseCode = "403", description = "LabId is not or cannot be assigned to Partner.")
     })
   @GetMapping("/search/{labId}")
   public ResponseEntity<List<LabPublicKeyInfo>> searchPublicKeys(
+    @Valid @Pattern(regexp = "^[A-Za-z0-9]{1,64}$") @RequestHeader("X-CWA-PARTNER-ID") String partnerId,
+    @PathVariable("labId") String labId,
+    @RequestParam(value = "cursor", required = false) Long cursor,
+    @RequestParam(value = "limit", required = false) Integer limit) {
+
+    checkLabIdClaim(partnerId, labId);
+
+    if (cursor == null && limit == null) {
+      return ResponseEntity.ok(convert(dccRegistrationService.findPendingDccByLabId(labId)));
+    }
+
+    if (limit != null && limit < 1) {
+      throw new DccServerException(HttpStatus.BAD_REQUEST, "Limit must be greater than 0");
+    }
+
+    int maxPageSize = config.getPublicKeySearch().getMaxPageSize();
+    int pageSize = limit == null ? maxPageSize : Math.min(limit, maxPageSize);
+
+    List<PendingDccRegistration> page =
+      dccRegistrationService.findPendingDccByLabId(labId, cursor == null ? 0 : cursor, pageSize);
+
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (page.size() == pageSize) {
+      response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+    }
+
+    return response.body(convert(page));
+  }
+
+  /**
+   * Endpoint for streaming all PublicKeys of a lab as newline delimited JSON.
+   */
+  @Operation(
+    summary = "Stream Public Keys and Test Ids for given LabId",
+    description = "Endpoint to download all PublicKeys which are assigned to a testId and the given lab Id as newline"
+      + " delimited JSON. The result is streamed from the database and is not limited in size.",
+    tags = {"internal"},
+    parameters = {
+      @Parameter(name = "X-CWA-PARTNER-ID", in = ParameterIn.HEADER, description = "PartnerID. This needs only to be"
+        + " set if DCC-Server is contacted without DCC-Proxy in between."),
+      @Parameter(name = "labId", in = ParameterIn.PATH, description = "ID of the laboratory to search for.")
+    },
+    responses = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "Public Keys streamed, one JSON object per line.",
+        content = @Content(
+          mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+          schema = @Schema(implementation = LabPublicKeyInfo.class))),
+      @ApiResponse(responseCode = "500", description = "Internal Server Error"),
+      @ApiResponse(responseCode = "403", description = "LabId is not or cannot be assigned to Partner.")
+    })
+  @GetMapping(value = "/search/{labId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamPublicKeys(
     @Valid @Pattern(regexp = "^[A-Za-z0-9]{1,64}$") @RequestHeader("X-CWA-PARTNER-ID") String partnerId,
     @PathVariable("labId") String labId) {
 
+    checkLabIdClaim(partnerId, labId);
+
+    StreamingResponseBody body = outputStream ->
+      dccRegistrationService.streamPendingDccByLabId(labId, dccRegistration -> {
+        try {
+          outputStream.write(objectMapper.writeValueAsBytes(convert(dccRegistration)));
+          outputStream.write('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_NDJSON)
+      .body(body);
+  }
+
+  private void checkLabIdClaim(String partnerId, String labId) {
     if (!labIdClaimService.getClaim(partnerId, labId)) {
       throw new DccServerException(HttpStatus.FORBIDDEN, "Failed to claim LabId");
     }
+  }
 
-    List<LabPublicKeyInfo> resultList = dccRegistrationService.findPendingDccByLabId(labId).stream()
+  private List<LabPublicKeyInfo> convert(List<PendingDccRegistration> dccRegistrations) {
+    return dccRegistrations.stream()
       .map(this::convert)
       .collect(Collectors.toList());
-
-    return ResponseEntity.ok(resultList);
   }
 
-  private LabPublicKeyInfo convert(DccRegistration dccRegistration) {
+  private LabPublicKeyInfo convert(PendingDccRegistration dccRegistration) {
     LabPublicKeyInfo labPublicKeyInfo = new LabPublicKeyInfo();
     labPublicKeyInfo.setPublicKey(dccRegistration.getPublicKey());
     labPublicKeyInfo.setTestId(dccRegistration.getHashedGuid());
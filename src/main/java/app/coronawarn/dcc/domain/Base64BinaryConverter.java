@@ -0,0 +1,43 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.domain;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import java.util.Base64;
+
+/**
+ * Stores Base64 encoded attributes as binary columns. The entity keeps the Base64 representation used by the API,
+ * while the database only stores the decoded bytes.
+ */
+@Converter
+public class Base64BinaryConverter implements AttributeConverter<String, byte[]> {
+
+  @Override
+  public byte[] convertToDatabaseColumn(String attribute) {
+    return attribute == null ? null : Base64.getDecoder().decode(attribute);
+  }
+
+  @Override
+  public String convertToEntityAttribute(byte[] column) {
+    return column == null ? null : Base64.getEncoder().encodeToString(column);
+  }
+}
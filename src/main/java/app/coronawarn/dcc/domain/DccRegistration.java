@@ -21,6 +21,7 @@
 package app.coronawarn.dcc.domain;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -87,12 +88,14 @@ public class DccRegistration implements Serializable {
    * PublicKey used to encrypt DEK, received by CWA-App.
    */
   @Column(name = "public_key")
+  @Convert(converter = Base64BinaryConverter.class)
   private String publicKey;
 
   /**
    * DEK encrpyted with PublicKey, received by LAB Server.
    */
   @Column(name = "encrypted_data_encryption_key")
+  @Convert(converter = Base64BinaryConverter.class)
   private String encryptedDataEncryptionKey;
 
   /**
@@ -105,14 +108,23 @@ public class DccRegistration implements Serializable {
    * Encrypted DCC payload, received by LAB Server.
    */
   @Column(name = "dcc_encrypted_payload")
+  @Convert(converter = Base64BinaryConverter.class)
   private String dccEncryptedPayload;
 
   /**
    * DCC without payload, received by signing server.
    */
   @Column(name = "dcc")
+  @Convert(converter = Base64BinaryConverter.class)
   private String dcc;
 
+  /**
+   * DCC with encrypted payload, ready to be downloaded by CWA-App.
+   */
+  @Column(name = "download_dcc")
+  @Convert(converter = Base64BinaryConverter.class)
+  private String downloadDcc;
+
   @Column(name = "error")
   @Enumerated(EnumType.STRING)
   private DccErrorReason error;
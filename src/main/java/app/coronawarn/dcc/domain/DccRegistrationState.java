@@ -0,0 +1,63 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.domain;
+
+
+/**
+ * Projection of a DCC Registration with the columns required to determine its status and to answer a claim of the
+ * CWA-App. Besides the DEK and the DCC components no data of the registration is loaded.
+ */
+public interface DccRegistrationState {
+
+  Long getId();
+
+  DccErrorReason getError();
+
+  boolean isDccHashPresent();
+
+  /**
+   * Base64 encoded encrypted Data Encryption Key.
+   */
+  String getEncryptedDataEncryptionKey();
+
+  /**
+   * Base64 encoded encrypted DCC payload.
+   */
+  String getDccEncryptedPayload();
+
+  /**
+   * Base64 encoded DCC without payload.
+   */
+  String getDcc();
+
+  /**
+   * Base64 encoded DCC with encrypted payload, if it has been precomputed.
+   */
+  String getDownloadDcc();
+
+  default boolean isDccEncryptedPayloadPresent() {
+    return getDccEncryptedPayload() != null;
+  }
+
+  default boolean isDccPresent() {
+    return getDcc() != null;
+  }
+}
@@ -0,0 +1,87 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.domain;
+
+/**
+ * Status of a DCC Registration as seen by the CWA-App when claiming the DCC.
+ */
+public enum DccRegistrationStatus {
+
+  /**
+   * DCC has not been uploaded or has been uploaded but not signed yet.
+   */
+  PENDING,
+
+  /**
+   * DCC is signed and can be downloaded.
+   */
+  READY,
+
+  /**
+   * Creation of the DCC failed.
+   */
+  ERROR,
+
+  /**
+   * DCC data has already been removed by cleanup.
+   */
+  GONE;
+
+  /**
+   * Determines the status of a DCC Registration.
+   *
+   * @param registration the DCC Registration
+   * @return the status of the registration
+   */
+  public static DccRegistrationStatus of(DccRegistration registration) {
+    return of(
+      registration.getError(),
+      registration.getDccHash() != null,
+      registration.getDccEncryptedPayload() != null,
+      registration.getDcc() != null);
+  }
+
+  /**
+   * Determines the status of a DCC Registration from its state projection.
+   *
+   * @param state the state of the DCC Registration
+   * @return the status of the registration
+   */
+  public static DccRegistrationStatus of(DccRegistrationState state) {
+    return of(state.getError(), state.isDccHashPresent(), state.isDccEncryptedPayloadPresent(), state.isDccPresent());
+  }
+
+  private static DccRegistrationStatus of(
+    DccErrorReason error, boolean dccHashPresent, boolean dccEncryptedPayloadPresent, boolean dccPresent) {
+    if (error != null) {
+      return ERROR;
+    } else if (!dccHashPresent && !dccPresent) {
+      return PENDING;
+    } else if (dccHashPresent && dccEncryptedPayloadPresent && !dccPresent) {
+      // Uploaded asynchronously and waiting for signing
+      return PENDING;
+    } else if (dccHashPresent && !dccPresent) {
+      return GONE;
+    } else {
+      return READY;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(
+  description = "Request payload to upload multiple DCC from laboratory."
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DccBatchUploadRequest {
+
+  @Schema(description = "DCC upload requests by ID of the test (hashed GUID).")
+  @NotNull
+  @NotEmpty
+  private Map<@Pattern(regexp = "^[XxA-Fa-f0-9]([A-Fa-f0-9]{63})$") String, @Valid @NotNull DccUploadRequest> dccs;
+
+}
@@ -0,0 +1,47 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.model;
+
+import app.coronawarn.dcc.domain.DccErrorReason;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Schema(
+  description = "Result of a single DCC upload within a batch upload."
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DccBatchUploadResult {
+
+  @Schema(description = "HTTP Status Code the upload of this DCC would have resulted in as a single upload.")
+  private int status;
+
+  @Schema(description = "Base64 encoded DCC Structure without the payload."
+    + " (COSE/CBOR, Payload needs to be replaced by laboratory)")
+  private String partialDcc;
+
+  @Schema(description = "Reason of failure if signing of the DCC has failed.")
+  private DccErrorReason reason;
+
+}
@@ -21,13 +21,21 @@
 package app.coronawarn.dcc.repository;
 
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.domain.DccRegistrationState;
+import app.coronawarn.dcc.domain.PendingDccRegistration;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -37,23 +45,84 @@ public interface DccRegistrationRepository extends JpaRepository<DccRegistration
 
   Optional<DccRegistration> findByRegistrationToken(String registrationToken);
 
-  List<DccRegistration> findByLabIdAndDccHashIsNullAndPublicKeyIsNotNull(String labId);
+  boolean existsByRegistrationToken(String registrationToken);
+
+  @Query("SELECT d.id AS id, d.error AS error,"
+    + " CASE WHEN d.dccHash IS NULL THEN false ELSE true END AS dccHashPresent,"
+    + " d.encryptedDataEncryptionKey AS encryptedDataEncryptionKey,"
+    + " d.dccEncryptedPayload AS dccEncryptedPayload,"
+    + " d.dcc AS dcc,"
+    + " d.downloadDcc AS downloadDcc"
+    + " FROM DccRegistration d WHERE d.registrationToken = :registrationToken")
+  Optional<DccRegistrationState> findStateByRegistrationToken(@Param("registrationToken") String registrationToken);
+
+  List<PendingDccRegistration> findByLabIdAndDccHashIsNullAndPublicKeyIsNotNull(String labId);
+
+  @Query("SELECT d.id AS id, d.hashedGuid AS hashedGuid, d.dcci AS dcci, d.publicKey AS publicKey"
+    + " FROM DccRegistration d"
+    + " WHERE d.labId = :labId AND d.id > :afterId AND d.dccHash IS NULL AND d.publicKey IS NOT NULL"
+    + " ORDER BY d.id")
+  List<PendingDccRegistration> findPendingByLabIdAfterId(
+    @Param("labId") String labId, @Param("afterId") long afterId, Pageable pageable);
+
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("SELECT d.id AS id, d.hashedGuid AS hashedGuid, d.dcci AS dcci, d.publicKey AS publicKey"
+    + " FROM DccRegistration d"
+    + " WHERE d.labId = :labId AND d.dccHash IS NULL AND d.publicKey IS NOT NULL"
+    + " ORDER BY d.id")
+  Stream<PendingDccRegistration> streamPendingByLabId(@Param("labId") String labId);
 
   Optional<DccRegistration> findByHashedGuid(String hashedGuid);
 
+  List<DccRegistration> findByHashedGuidIn(Collection<String> hashedGuids);
+
+  @Query("SELECT d FROM DccRegistration d WHERE d.dccHash IS NOT NULL AND d.dccEncryptedPayload IS NOT NULL"
+    + " AND d.dcc IS NULL AND d.error IS NULL ORDER BY d.updatedAt")
+  List<DccRegistration> findUnsigned(Pageable pageable);
+
   @Modifying(clearAutomatically = true, flushAutomatically = true)
-  @Query("DELETE FROM DccRegistration d WHERE d.updatedAt < :threshold")
+  @Query("DELETE FROM DccRegistration d WHERE d.updatedAt < :threshold AND d.createdAt < :threshold")
   int deleteEntityByUpdatedAtBefore(@Param("threshold") LocalDateTime threshold);
 
   @Modifying(clearAutomatically = true, flushAutomatically = true)
   @Query("UPDATE DccRegistration d SET d.dcc = NULL, d.publicKey = NULL, d.encryptedDataEncryptionKey = NULL,"
-    + " d.error = NULL, d.hashedGuid = NULL, d.dccEncryptedPayload = NULL"
-    + " WHERE d.updatedAt < :threshold AND d.publicKey IS NOT NULL")
+    + " d.error = NULL, d.hashedGuid = NULL, d.dccEncryptedPayload = NULL, d.downloadDcc = NULL"
+    + " WHERE d.updatedAt < :threshold AND d.createdAt < :threshold AND d.publicKey IS NOT NULL")
   int removeDccDataByUpdatedAtBefore(@Param("threshold") LocalDateTime threshold);
 
   @Modifying(clearAutomatically = true, flushAutomatically = true)
   @Query("UPDATE DccRegistration d SET d.registrationToken = NULL, d.dcc = NULL, d.publicKey = NULL,"
-    + " d.encryptedDataEncryptionKey = NULL, d.error = NULL, d.hashedGuid = NULL, d.dccEncryptedPayload = NULL"
+    + " d.encryptedDataEncryptionKey = NULL, d.error = NULL, d.hashedGuid = NULL, d.dccEncryptedPayload = NULL,"
+    + " d.downloadDcc = NULL"
     + " WHERE d.createdAt < :threshold AND d.registrationToken IS NOT NULL")
   int removeRegistrationTokenByCreatedAtBefore(@Param("threshold") LocalDateTime threshold);
+
+  @Query("SELECT d.id FROM DccRegistration d"
+    + " WHERE d.updatedAt < :threshold AND d.createdAt < :threshold AND d.publicKey IS NOT NULL ORDER BY d.id")
+  List<Long> findIdsWithDccDataByUpdatedAtBefore(@Param("threshold") LocalDateTime threshold, Pageable pageable);
+
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("UPDATE DccRegistration d SET d.dcc = NULL, d.publicKey = NULL, d.encryptedDataEncryptionKey = NULL,"
+    + " d.error = NULL, d.hashedGuid = NULL, d.dccEncryptedPayload = NULL, d.downloadDcc = NULL"
+    + " WHERE d.id IN :ids AND d.updatedAt < :threshold AND d.createdAt < :threshold AND d.publicKey IS NOT NULL")
+  int removeDccDataByIdIn(@Param("ids") Collection<Long> ids, @Param("threshold") LocalDateTime threshold);
+
+  @Query("SELECT d.id FROM DccRegistration d"
+    + " WHERE d.createdAt < :threshold AND d.registrationToken IS NOT NULL ORDER BY d.id")
+  List<Long> findIdsWithRegistrationTokenByCreatedAtBefore(
+    @Param("threshold") LocalDateTime threshold, Pageable pageable);
+
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("UPDATE DccRegistration d SET d.registrationToken = NULL, d.dcc = NULL, d.publicKey = NULL,"
+    + " d.encryptedDataEncryptionKey = NULL, d.error = NULL, d.hashedGuid = NULL, d.dccEncryptedPayload = NULL,"
+    + " d.downloadDcc = NULL"
+    + " WHERE d.id IN :ids AND d.createdAt < :threshold AND d.registrationToken IS NOT NULL")
+  int removeRegistrationTokenByIdIn(@Param("ids") Collection<Long> ids, @Param("threshold") LocalDateTime threshold);
+
+  @Query("SELECT d.id FROM DccRegistration d WHERE d.updatedAt < :threshold AND d.createdAt < :threshold ORDER BY d.id")
+  List<Long> findIdsByUpdatedAtBefore(@Param("threshold") LocalDateTime threshold, Pageable pageable);
+
+  @Modifying(clearAutomatically = true, flushAutomatically = true)
+  @Query("DELETE FROM DccRegistration d WHERE d.id IN :ids AND d.updatedAt < :threshold AND d.createdAt < :threshold")
+  int deleteEntityByIdIn(@Param("ids") Collection<Long> ids, @Param("threshold") LocalDateTime threshold);
 }
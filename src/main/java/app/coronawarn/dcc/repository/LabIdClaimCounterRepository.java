@@ -0,0 +1,67 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.repository;
+
+import app.coronawarn.dcc.domain.LabIdClaimCounter;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+@Transactional
+public interface LabIdClaimCounterRepository extends JpaRepository<LabIdClaimCounter, String> {
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT c FROM LabIdClaimCounter c WHERE c.partnerId = :partnerId")
+  Optional<LabIdClaimCounter> findByPartnerIdForUpdate(@Param("partnerId") String partnerId);
+
+  /**
+   * Creates the counter of a partner initialized with the number of existing claims.
+   *
+   * @return 1 if the counter was created, 0 if it already exists.
+   */
+  @Modifying
+  @Query(nativeQuery = true, value = "INSERT INTO lab_id_claim_counter (partner_id, claims) "
+    + "SELECT :partnerId, (SELECT COUNT(*) FROM lab_id_claim WHERE partner_id = :partnerId) "
+    + "WHERE NOT EXISTS (SELECT 1 FROM lab_id_claim_counter WHERE partner_id = :partnerId)")
+  int createCounter(@Param("partnerId") String partnerId);
+
+  /**
+   * Increments the counter if the partner has not reached its quota. The counter row stays locked until the
+   * surrounding transaction ends, so concurrent claims of a partner are serialized.
+   *
+   * @return 1 if the counter was incremented, 0 if the quota is exceeded or the counter does not exist.
+   */
+  @Modifying
+  @Query("UPDATE LabIdClaimCounter c SET c.claims = c.claims + 1 "
+    + "WHERE c.partnerId = :partnerId AND c.claims < :claimsPerPartner")
+  int incrementClaims(@Param("partnerId") String partnerId, @Param("claimsPerPartner") int claimsPerPartner);
+
+  @Modifying
+  @Query(nativeQuery = true, value = "UPDATE lab_id_claim_counter "
+    + "SET claims = (SELECT COUNT(*) FROM lab_id_claim WHERE partner_id = :partnerId) WHERE partner_id = :partnerId")
+  int recountClaims(@Param("partnerId") String partnerId);
+
+}
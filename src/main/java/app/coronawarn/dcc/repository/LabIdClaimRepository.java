@@ -23,6 +23,8 @@
 import app.coronawarn.dcc.domain.LabIdClaim;
 import jakarta.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -41,7 +43,35 @@ public interface LabIdClaimRepository extends JpaRepository<LabIdClaim, Long> {
   void updateLastUsed(@Param("claim") LabIdClaim claim);
 
   @Modifying
-  @Query("DELETE FROM LabIdClaim l WHERE l.lastUsed < :timestamp")
-  int deleteClaimsOlderThan(@Param("timestamp") LocalDateTime timestamp);
+  @Query("UPDATE LabIdClaim l SET l.lastUsed = current_timestamp WHERE l.labId = :labId AND l.partnerId = :partnerId")
+  int updateLastUsedByLabIdAndPartnerId(@Param("labId") String labId, @Param("partnerId") String partnerId);
+
+  /**
+   * Inserts a new claim in one statement if the LabId is not claimed yet. Concurrent claims of the same LabId are
+   * rejected by the unique constraint of the LabId.
+   *
+   * @return 1 if the claim was created, 0 if the LabId is already claimed.
+   */
+  @Modifying
+  @Query(nativeQuery = true, value = "INSERT INTO lab_id_claim (created_at, last_used, lab_id, partner_id) "
+    + "SELECT :now, :now, :labId, :partnerId "
+    + "WHERE NOT EXISTS (SELECT 1 FROM lab_id_claim WHERE lab_id = :labId)")
+  int insertClaim(@Param("labId") String labId, @Param("partnerId") String partnerId,
+                  @Param("now") LocalDateTime now);
+
+  @Modifying
+  @Query("UPDATE LabIdClaim l SET l.lastUsed = :lastUsed WHERE l.id IN :ids AND l.lastUsed < :lastUsed")
+  int updateLastUsedByIdIn(@Param("ids") Collection<Long> ids, @Param("lastUsed") LocalDateTime lastUsed);
+
+  @Query("SELECT l.id FROM LabIdClaim l WHERE l.id IN :ids")
+  List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+  @Query("SELECT DISTINCT l.partnerId FROM LabIdClaim l WHERE l.lastUsed < :timestamp")
+  List<String> findPartnerIdsWithClaimsOlderThan(@Param("timestamp") LocalDateTime timestamp);
+
+  @Modifying
+  @Query("DELETE FROM LabIdClaim l WHERE l.partnerId = :partnerId AND l.lastUsed < :timestamp")
+  int deleteClaimsOfPartnerOlderThan(@Param("partnerId") String partnerId,
+                                     @Param("timestamp") LocalDateTime timestamp);
 
 }
@@ -0,0 +1,260 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+/**
+ * Replaces the payload of a CBOR encoded COSE_Sign1 message without decoding it into a CBOR object tree.
+ * The byte offsets of the payload are located in a single pass and the message is reassembled as
+ * protected header + unprotected header + new payload + signature in one output buffer.
+ * All other bytes of the message are copied unchanged.
+ *
+ * <p>Decoding and encoding the message with CBORObject normalizes its encoding, while the splicer keeps it. The
+ * result is therefore only byte identical to the CBORObject round-trip if the message is already encoded in the
+ * form CBORObject writes. The splicer only accepts messages which are encoded that way and returns null otherwise,
+ * so that the caller falls back to CBORObject:
+ * <ul>
+ *   <li>every argument (integer value, length, count, tag) is encoded in its shortest form,</li>
+ *   <li>no floating point values and no simple values above 23,</li>
+ *   <li>no tags besides the ones in front of the COSE_Sign1 array,</li>
+ *   <li>no maps with more than one entry, since CBORObject may reorder their keys.</li>
+ * </ul>
+ * The contents of byte strings, e.g. the protected header, are opaque and are not affected by either path.
+ */
+final class CosePayloadSplicer {
+
+  private static final int MAJOR_TYPE_UNSIGNED = 0;
+  private static final int MAJOR_TYPE_NEGATIVE = 1;
+  private static final int MAJOR_TYPE_BYTE_STRING = 2;
+  private static final int MAJOR_TYPE_TEXT_STRING = 3;
+  private static final int MAJOR_TYPE_ARRAY = 4;
+  private static final int MAJOR_TYPE_MAP = 5;
+  private static final int MAJOR_TYPE_TAG = 6;
+  private static final int MAJOR_TYPE_SIMPLE = 7;
+
+  private static final int COSE_SIGN1_ITEMS = 4;
+  private static final int PAYLOAD_INDEX = 2;
+  private static final int MAX_DEPTH = 16;
+  private static final int MAX_MAP_ENTRIES = 1;
+  private static final int MAX_SIMPLE_VALUE = 23;
+
+  private static final int NOT_SUPPORTED = -1;
+
+  private CosePayloadSplicer() {
+  }
+
+  /**
+   * Replaces the payload (third element) of a COSE_Sign1 message.
+   *
+   * @param coseSign1  the CBOR encoded (optionally tagged) COSE_Sign1 message
+   * @param newPayload the new payload bytes
+   * @return the CBOR encoded COSE_Sign1 message with the new payload or null if the message uses encodings which
+   *     are not supported by the splicer (e.g. indefinite length items or encodings which CBORObject would
+   *     normalize). The caller has to fall back to a full CBOR decode in this case.
+   */
+  static byte[] splice(byte[] coseSign1, byte[] newPayload) {
+    int position = 0;
+
+    // Skip optional tags (e.g. COSE_Sign1 tag 18)
+    while (position < coseSign1.length && majorType(coseSign1[position]) == MAJOR_TYPE_TAG) {
+      position = skipHeader(coseSign1, position);
+      if (position == NOT_SUPPORTED) {
+        return null;
+      }
+    }
+
+    if (position >= coseSign1.length
+      || majorType(coseSign1[position]) != MAJOR_TYPE_ARRAY
+      || argument(coseSign1, position) != COSE_SIGN1_ITEMS) {
+      return null;
+    }
+    position = skipHeader(coseSign1, position);
+
+    int payloadStart = NOT_SUPPORTED;
+    int payloadEnd = NOT_SUPPORTED;
+    for (int i = 0; i < COSE_SIGN1_ITEMS && position != NOT_SUPPORTED; i++) {
+      int itemEnd = skipItem(coseSign1, position, 0);
+      if (i == PAYLOAD_INDEX) {
+        payloadStart = position;
+        payloadEnd = itemEnd;
+      }
+      position = itemEnd;
+    }
+
+    if (position != coseSign1.length) {
+      return null;
+    }
+
+    byte[] payloadHeader = byteStringHeader(newPayload.length);
+    int suffixLength = coseSign1.length - payloadEnd;
+
+    byte[] result = new byte[payloadStart + payloadHeader.length + newPayload.length + suffixLength];
+    int offset = 0;
+    System.arraycopy(coseSign1, 0, result, offset, payloadStart);
+    offset += payloadStart;
+    System.arraycopy(payloadHeader, 0, result, offset, payloadHeader.length);
+    offset += payloadHeader.length;
+    System.arraycopy(newPayload, 0, result, offset, newPayload.length);
+    offset += newPayload.length;
+    System.arraycopy(coseSign1, payloadEnd, result, offset, suffixLength);
+
+    return result;
+  }
+
+  /**
+   * Returns the position directly after the data item starting at the given position.
+   */
+  private static int skipItem(byte[] data, int position, int depth) {
+    if (depth > MAX_DEPTH) {
+      return NOT_SUPPORTED;
+    }
+
+    int end = skipHeader(data, position);
+    if (end == NOT_SUPPORTED) {
+      return NOT_SUPPORTED;
+    }
+
+    int majorType = majorType(data[position]);
+    if (majorType == MAJOR_TYPE_UNSIGNED || majorType == MAJOR_TYPE_NEGATIVE) {
+      return end;
+    }
+
+    long argument = argument(data, position);
+    if (argument < 0) {
+      return NOT_SUPPORTED;
+    }
+
+    switch (majorType) {
+      case MAJOR_TYPE_BYTE_STRING:
+      case MAJOR_TYPE_TEXT_STRING:
+        return argument <= data.length - end ? end + (int) argument : NOT_SUPPORTED;
+      case MAJOR_TYPE_ARRAY:
+        return skipItems(data, end, argument, depth);
+      case MAJOR_TYPE_MAP:
+        return argument <= MAX_MAP_ENTRIES ? skipItems(data, end, argument * 2, depth) : NOT_SUPPORTED;
+      case MAJOR_TYPE_SIMPLE:
+        // false, true, null and undefined, the value is part of the header. Floats may be shortened by CBORObject.
+        return argument <= MAX_SIMPLE_VALUE ? end : NOT_SUPPORTED;
+      default:
+        // tags inside of the message may be interpreted and re-encoded by CBORObject
+        return NOT_SUPPORTED;
+    }
+  }
+
+  private static int skipItems(byte[] data, int position, long count, int depth) {
+    if (count > data.length - position) {
+      return NOT_SUPPORTED;
+    }
+
+    for (long i = 0; i < count && position != NOT_SUPPORTED; i++) {
+      position = skipItem(data, position, depth + 1);
+    }
+    return position;
+  }
+
+  /**
+   * Returns the position directly after the head (initial byte and argument) of the data item.
+   * Heads whose argument is not encoded in its shortest form are not supported.
+   */
+  private static int skipHeader(byte[] data, int position) {
+    if (position >= data.length) {
+      return NOT_SUPPORTED;
+    }
+
+    int argumentLength = argumentLength(data[position]);
+    if (argumentLength == NOT_SUPPORTED || argumentLength >= data.length - position
+      || argumentLength != shortestArgumentLength(argument(data, position))) {
+      return NOT_SUPPORTED;
+    }
+    return position + 1 + argumentLength;
+  }
+
+  /**
+   * Number of bytes following the initial byte in the shortest encoding of an argument.
+   */
+  private static int shortestArgumentLength(long argument) {
+    if (argument < 0) {
+      return NOT_SUPPORTED;
+    } else if (argument < 24) {
+      return 0;
+    } else if (argument <= 0xffL) {
+      return 1;
+    } else if (argument <= 0xffffL) {
+      return 2;
+    } else if (argument <= 0xffffffffL) {
+      return 4;
+    } else {
+      return 8;
+    }
+  }
+
+  private static long argument(byte[] data, int position) {
+    int additionalInformation = data[position] & 0x1f;
+    int argumentLength = argumentLength(data[position]);
+
+    if (argumentLength == 0) {
+      return additionalInformation;
+    } else if (argumentLength == NOT_SUPPORTED || argumentLength >= data.length - position) {
+      return NOT_SUPPORTED;
+    }
+
+    long argument = 0;
+    for (int i = 1; i <= argumentLength; i++) {
+      argument = (argument << 8) | (data[position + i] & 0xff);
+    }
+    // arguments which do not fit into a signed long are not used in a COSE_Sign1 message
+    return argument < 0 ? NOT_SUPPORTED : argument;
+  }
+
+  private static int argumentLength(byte initialByte) {
+    int additionalInformation = initialByte & 0x1f;
+    if (additionalInformation < 24) {
+      return 0;
+    } else if (additionalInformation < 28) {
+      return 1 << (additionalInformation - 24);
+    } else {
+      // reserved values and indefinite length items
+      return NOT_SUPPORTED;
+    }
+  }
+
+  private static int majorType(byte initialByte) {
+    return (initialByte & 0xff) >>> 5;
+  }
+
+  /**
+   * Creates the shortest possible head of a byte string with the given length.
+   */
+  private static byte[] byteStringHeader(int length) {
+    int initialByte = MAJOR_TYPE_BYTE_STRING << 5;
+
+    if (length < 24) {
+      return new byte[] {(byte) (initialByte | length)};
+    } else if (length <= 0xff) {
+      return new byte[] {(byte) (initialByte | 24), (byte) length};
+    } else if (length <= 0xffff) {
+      return new byte[] {(byte) (initialByte | 25), (byte) (length >>> 8), (byte) length};
+    } else {
+      return new byte[] {
+        (byte) (initialByte | 26), (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8),
+        (byte) length};
+    }
+  }
+}
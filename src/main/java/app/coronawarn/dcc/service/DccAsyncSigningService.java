@@ -0,0 +1,93 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.exception.DccServerException;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Signs DCC which have been uploaded asynchronously.
+ */
+@Profile("internal")
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DccAsyncSigningService {
+
+  private final DccRegistrationRepository dccRegistrationRepository;
+
+  private final DccUploadService dccUploadService;
+
+  private final DccApplicationConfig config;
+
+  private final ExecutorService dccUploadExecutor;
+
+  /**
+   * Signing Job to sign all DCC which have been uploaded but not signed yet.
+   */
+  @Scheduled(fixedDelayString = "${cwa.dcc.async-upload.rate:5000}")
+  @SchedulerLock(name = "dcc_signing_job", lockAtMostFor = "PT5M")
+  public void signPendingDcc() {
+    if (!config.getAsyncUpload().isEnabled()) {
+      return;
+    }
+
+    List<DccRegistration> dccRegistrations =
+      dccRegistrationRepository.findUnsigned(PageRequest.of(0, config.getAsyncUpload().getBatchSize()));
+
+    if (dccRegistrations.isEmpty()) {
+      return;
+    }
+
+    log.info("Start signing of {} DCC.", dccRegistrations.size());
+
+    CompletableFuture.allOf(dccRegistrations.stream()
+      .map(dccRegistration -> CompletableFuture.runAsync(() -> sign(dccRegistration), dccUploadExecutor))
+      .toArray(CompletableFuture[]::new)
+    ).join();
+
+    log.info("Finished signing of DCC.");
+  }
+
+  private void sign(DccRegistration dccRegistration) {
+    try {
+      dccUploadService.signAccepted(dccRegistration);
+    } catch (DccService.DccGenerateException e) {
+      log.info("Failed to sign DCC with ID {}: {}", dccRegistration.getId(), e.getReason());
+    } catch (DccServerException e) {
+      log.info("Postponed signing of DCC with ID {}: {}", dccRegistration.getId(), e.getMessage());
+    } catch (RuntimeException e) {
+      log.error("Failed to sign DCC with ID {}: {}", dccRegistration.getId(), e.getMessage());
+    }
+  }
+}
@@ -22,25 +22,48 @@
 
 import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.core.LockExtender;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DccRegistrationCleanupService {
 
+  private static final String STAGE_DCC_DATA = "dcc_data";
+  private static final String STAGE_REGISTRATION_TOKEN = "registration_token";
+  private static final String STAGE_ENTITY = "entity";
+
   private final DccRegistrationRepository dccRegistrationRepository;
 
   private final DccApplicationConfig config;
 
+  private final DccRegistrationStatusCacheService dccRegistrationStatusCacheService;
+
+  private final DccRegistrationNotificationService dccRegistrationNotificationService;
+
+  private final MeterRegistry meterRegistry;
+
+  private final TransactionTemplate transactionTemplate;
+
   /**
    * Cleanup Job to remove data from entities in 2 stages and finally delete them.
+   * If a chunk size is configured, each stage is processed in chunks of entities with one transaction per chunk.
+   * Every transaction which changes entities publishes a flush of the cached DCC Registrations.
    */
   @Scheduled(fixedDelayString = "${cwa.dcc.cleanup.rate:1800000}")
   @SchedulerLock(name = "entity_cleanup_job")
@@ -48,20 +71,134 @@ public void cleanup() {
     log.info("Start Entities Cleanup...");
 
     LocalDateTime dccDataThreshold = LocalDateTime.now().minus(config.getCleanup().getDccData(), ChronoUnit.DAYS);
-    int dccDataCount = dccRegistrationRepository.removeDccDataByUpdatedAtBefore(dccDataThreshold);
-    log.info("Removed DCC Data from {} entities.", dccDataCount);
-
     LocalDateTime registrationTokenThreshold =
       LocalDateTime.now().minus(config.getCleanup().getRegistrationToken(), ChronoUnit.DAYS);
-    int registrationTokenCount =
-      dccRegistrationRepository.removeRegistrationTokenByCreatedAtBefore(registrationTokenThreshold);
-    log.info("Removed RegistrationToken from {} entities.", registrationTokenCount);
-
     LocalDateTime entityThreshold = LocalDateTime.now().minus(config.getCleanup().getEntity(), ChronoUnit.DAYS);
-    int entityCount = dccRegistrationRepository.deleteEntityByUpdatedAtBefore(entityThreshold);
-    log.info("Deleted {} entities from database.", entityCount);
+
+    if (config.getCleanup().getChunkSize() > 0) {
+      cleanupChunked(dccDataThreshold, registrationTokenThreshold, entityThreshold);
+    } else {
+      cleanupBulk(dccDataThreshold, registrationTokenThreshold, entityThreshold);
+    }
 
     log.info("Finished Entity Cleanup.");
   }
 
+  private void cleanupBulk(
+    LocalDateTime dccDataThreshold, LocalDateTime registrationTokenThreshold, LocalDateTime entityThreshold) {
+    int dccDataCount = changeAndFlush(
+      () -> dccRegistrationRepository.removeDccDataByUpdatedAtBefore(dccDataThreshold));
+    log.info("Removed DCC Data from {} entities.", dccDataCount);
+
+    int registrationTokenCount = changeAndFlush(
+      () -> dccRegistrationRepository.removeRegistrationTokenByCreatedAtBefore(registrationTokenThreshold));
+    log.info("Removed RegistrationToken from {} entities.", registrationTokenCount);
+
+    if (deletesEntities()) {
+      int entityCount = changeAndFlush(
+        () -> dccRegistrationRepository.deleteEntityByUpdatedAtBefore(entityThreshold));
+      log.info("Deleted {} entities from database.", entityCount);
+    }
+  }
+
+  private void cleanupChunked(
+    LocalDateTime dccDataThreshold, LocalDateTime registrationTokenThreshold, LocalDateTime entityThreshold) {
+    long deadline = System.currentTimeMillis() + config.getCleanup().getMaxRuntime();
+    PageRequest chunk = PageRequest.of(0, config.getCleanup().getChunkSize());
+
+    int dccDataCount = cleanupStage(STAGE_DCC_DATA, deadline,
+      () -> dccRegistrationRepository.findIdsWithDccDataByUpdatedAtBefore(dccDataThreshold, chunk),
+      ids -> dccRegistrationRepository.removeDccDataByIdIn(ids, dccDataThreshold));
+    log.info("Removed DCC Data from {} entities.", dccDataCount);
+
+    int registrationTokenCount = cleanupStage(STAGE_REGISTRATION_TOKEN, deadline,
+      () -> dccRegistrationRepository.findIdsWithRegistrationTokenByCreatedAtBefore(registrationTokenThreshold, chunk),
+      ids -> dccRegistrationRepository.removeRegistrationTokenByIdIn(ids, registrationTokenThreshold));
+    log.info("Removed RegistrationToken from {} entities.", registrationTokenCount);
+
+    if (deletesEntities()) {
+      int entityCount = cleanupStage(STAGE_ENTITY, deadline,
+        () -> dccRegistrationRepository.findIdsByUpdatedAtBefore(entityThreshold, chunk),
+        ids -> dccRegistrationRepository.deleteEntityByIdIn(ids, entityThreshold));
+      log.info("Deleted {} entities from database.", entityCount);
+    }
+  }
+
+  /**
+   * Changes entities and publishes a flush of the cached DCC Registrations in the same transaction, so that the
+   * change is rolled back if the flush cannot be published. The local cache is flushed after the commit.
+   */
+  private int changeAndFlush(Supplier<Integer> change) {
+    Integer count = transactionTemplate.execute(status -> {
+      int changed = change.get();
+      if (changed > 0) {
+        dccRegistrationNotificationService.publishFlush();
+      }
+      return changed;
+    });
+
+    if (count != null && count > 0) {
+      dccRegistrationStatusCacheService.invalidateAll();
+    }
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * If the table is partitioned, expired entities are removed by dropping their partition
+   * (see {@link DccRegistrationPartitionService}) instead of deleting them row by row.
+   */
+  private boolean deletesEntities() {
+    return !config.getPartitioning().isEnabled();
+  }
+
+  /**
+   * Processes chunks of a cleanup stage until no entities are left, the runtime of the cycle is exceeded or the
+   * cleanup lock cannot be extended.
+   */
+  private int cleanupStage(
+    String stage, long deadline, Supplier<List<Long>> nextChunk, Function<List<Long>, Integer> processChunk) {
+    int count = 0;
+
+    while (System.currentTimeMillis() < deadline) {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      List<Long> ids = nextChunk.get();
+      if (ids.isEmpty()) {
+        break;
+      }
+
+      int chunkCount = changeAndFlush(() -> processChunk.apply(ids));
+      sample.stop(meterRegistry.timer("dcc.cleanup.chunk", "stage", stage));
+      meterRegistry.counter("dcc.cleanup.entities", "stage", stage).increment(chunkCount);
+      count += chunkCount;
+
+      if (ids.size() < config.getCleanup().getChunkSize() || !extendLock() || !pause()) {
+        break;
+      }
+    }
+
+    return count;
+  }
+
+  private boolean extendLock() {
+    try {
+      LockExtender.extendActiveLock(Duration.ofMillis(config.getCleanup().getLockExtension()), Duration.ZERO);
+      return true;
+    } catch (LockExtender.NoActiveLockException e) {
+      // Cleanup was not started by the scheduler
+      return true;
+    } catch (LockExtender.LockCanNotBeExtendedException e) {
+      log.warn("Could not extend cleanup lock, stopping Cleanup Cycle.");
+      return false;
+    }
+  }
+
+  private boolean pause() {
+    try {
+      Thread.sleep(config.getCleanup().getChunkPause());
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
 }
@@ -0,0 +1,147 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+/**
+ * Listens for change notifications of DCC Registrations via PostgreSQL LISTEN and invalidates the cached entries.
+ * A dedicated database connection outside of the connection pool is used. Whenever this connection is not
+ * established, the cache is flushed and bypassed.
+ */
+@Profile("external")
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DccRegistrationNotificationListener {
+
+  private final DccApplicationConfig config;
+
+  private final DataSourceProperties dataSourceProperties;
+
+  private final DccRegistrationStatusCacheService dccRegistrationStatusCacheService;
+
+  private volatile boolean running;
+
+  private Thread listenerThread;
+
+  /**
+   * Starts the listener thread if change notifications are enabled.
+   */
+  @PostConstruct
+  public void start() {
+    if (!config.getClaimCache().isEnabled() || !config.getClaimCache().getNotification().isEnabled()) {
+      return;
+    }
+
+    running = true;
+    listenerThread = new Thread(this::listen, "dcc-registration-listener");
+    listenerThread.setDaemon(true);
+    listenerThread.start();
+  }
+
+  /**
+   * Stops the listener thread.
+   */
+  @PreDestroy
+  public void stop() {
+    running = false;
+    if (listenerThread != null) {
+      listenerThread.interrupt();
+    }
+  }
+
+  private void listen() {
+    DccApplicationConfig.Notification notificationConfig = config.getClaimCache().getNotification();
+
+    while (running) {
+      try (Connection connection = DriverManager.getConnection(
+        dataSourceProperties.determineUrl(),
+        dataSourceProperties.determineUsername(),
+        dataSourceProperties.determinePassword())) {
+
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("LISTEN " + notificationConfig.getChannel());
+        }
+
+        log.info("Listening for DCC Registration change notifications");
+        dccRegistrationStatusCacheService.setNotificationConnected(true);
+
+        while (running) {
+          PGNotification[] notifications = pgConnection.getNotifications(notificationConfig.getPollTimeout());
+
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              handle(notification.getParameter());
+            }
+          }
+
+          // Detect broken connections
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+          }
+        }
+      } catch (SQLException e) {
+        log.warn("Lost connection for DCC Registration change notifications: {}", e.getMessage());
+      } finally {
+        dccRegistrationStatusCacheService.setNotificationConnected(false);
+      }
+
+      sleep(notificationConfig.getReconnectDelay());
+    }
+  }
+
+  private void handle(String payload) {
+    if (DccRegistrationNotificationService.FLUSH_ALL.equals(payload)) {
+      dccRegistrationStatusCacheService.invalidateAll();
+    } else {
+      dccRegistrationStatusCacheService.invalidate(payload);
+    }
+  }
+
+  private void sleep(long millis) {
+    if (!running) {
+      return;
+    }
+
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Publishes changes of DCC Registrations to other instances via PostgreSQL NOTIFY.
+ *
+ * <p>Notifications have to be published within the transaction which writes the change. PostgreSQL delivers them
+ * when the transaction commits, and a failed notification rolls back the change. A change which is not announced
+ * would be served from the caches of other instances until the long time to live expires.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DccRegistrationNotificationService {
+
+  /**
+   * Payload of a notification which invalidates all cached registrations.
+   */
+  public static final String FLUSH_ALL = "*";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final DccApplicationConfig config;
+
+  /**
+   * Notifies other instances that the DCC Registration with given RegistrationToken has been changed.
+   *
+   * @param registrationToken the RegistrationToken of the changed DCC Registration.
+   * @throws DataAccessException if the notification could not be published.
+   */
+  public void publish(String registrationToken) {
+    if (registrationToken != null) {
+      notify(registrationToken);
+    }
+  }
+
+  /**
+   * Notifies other instances that any DCC Registration could have been changed.
+   *
+   * @throws DataAccessException if the notification could not be published.
+   */
+  public void publishFlush() {
+    notify(FLUSH_ALL);
+  }
+
+  private void notify(String payload) {
+    if (!config.getClaimCache().getNotification().isEnabled()) {
+      return;
+    }
+
+    try {
+      jdbcTemplate.queryForObject("SELECT pg_notify(?, ?)", Object.class,
+        config.getClaimCache().getNotification().getChannel(), payload);
+    } catch (DataAccessException e) {
+      log.error("Failed to publish DCC Registration change notification: {}", e.getMessage());
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the monthly partitions of the DCC Registration table created by Liquibase context "partitioned".
+ *
+ * <p>Partitions for the next months are created in advance, the table has no default partition. Partitions whose
+ * time range has ended and which contain no entity updated after the entity cleanup threshold are dropped as a whole.
+ * This replaces the row-wise deletion of entities of the cleanup job.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty("cwa.dcc.partitioning.enabled")
+public class DccRegistrationPartitionService {
+
+  private static final String TABLE = "dcc_registration";
+
+  private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final TransactionTemplate transactionTemplate;
+
+  private final DccApplicationConfig config;
+
+  /**
+   * Partition maintenance job which creates future partitions and drops expired partitions.
+   */
+  @Scheduled(cron = "${cwa.dcc.partitioning.cron:0 0 3 * * *}")
+  @SchedulerLock(name = "dcc_registration_partition_job", lockAtMostFor = "PT10M")
+  public void maintainPartitions() {
+    log.info("Start DCC Registration Partition Maintenance...");
+
+    // Both steps are independent, a failure of one step must not prevent the other one
+    try {
+      createPartitions();
+    } catch (DataAccessException | TransactionException e) {
+      log.error("Failed to create DCC Registration partitions", e);
+    }
+
+    try {
+      dropExpiredPartitions();
+    } catch (DataAccessException | TransactionException e) {
+      log.error("Failed to drop expired DCC Registration partitions", e);
+    }
+
+    log.info("Finished DCC Registration Partition Maintenance.");
+  }
+
+  private void createPartitions() {
+    YearMonth currentMonth = YearMonth.now();
+    List<Partition> partitions = partitions();
+
+    for (int i = 0; i <= config.getPartitioning().getPremakeMonths(); i++) {
+      YearMonth month = currentMonth.plusMonths(i);
+      LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+
+      if (partitions.stream().noneMatch(partition -> partition.contains(monthStart))) {
+        if (i == 0) {
+          log.error("Partition of the current month is missing, DCC Registrations cannot be created.");
+        }
+
+        String partition = TABLE + "_p" + month.format(PARTITION_SUFFIX);
+        jdbcTemplate.execute(String.format(
+          "CREATE TABLE %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+          partition, TABLE, month.atDay(1), month.plusMonths(1).atDay(1)));
+        log.info("Created partition {}", partition);
+      }
+    }
+  }
+
+  private void dropExpiredPartitions() {
+    LocalDateTime entityThreshold = LocalDateTime.now().minus(config.getCleanup().getEntity(), ChronoUnit.DAYS);
+
+    for (Partition partition : partitions()) {
+      if (partition.getTo() == null || !partition.getTo().isBefore(entityThreshold)) {
+        continue;
+      }
+
+      Boolean inUse = jdbcTemplate.queryForObject(
+        "SELECT EXISTS (SELECT 1 FROM " + partition.getName() + " WHERE updated_at >= ?)",
+        Boolean.class, entityThreshold);
+
+      if (Boolean.FALSE.equals(inUse)) {
+        detachPartition(partition);
+        dropTable(partition.getName());
+      }
+    }
+
+    // Partitions which have been detached by a previous run which failed before dropping them
+    for (String table : detachedPartitions()) {
+      dropTable(table);
+    }
+  }
+
+  /**
+   * Detaches a partition concurrently, which only takes a SHARE UPDATE EXCLUSIVE lock on the partitioned table, so
+   * requests are not blocked. A detach which has been interrupted before is completed with FINALIZE.
+   * Both statements cannot run inside a transaction.
+   */
+  private void detachPartition(Partition partition) {
+    jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s %s",
+      TABLE, partition.getName(), partition.isDetachPending() ? "FINALIZE" : "CONCURRENTLY"));
+    log.info("Detached expired partition {}", partition.getName());
+  }
+
+  private void dropTable(String table) {
+    // Dropping a table does not fire the delete trigger which maintains dcc_registration_unique_key
+    transactionTemplate.executeWithoutResult(status -> {
+      jdbcTemplate.update("DELETE FROM dcc_registration_unique_key WHERE registration_id IN (SELECT id FROM "
+        + table + ")");
+      jdbcTemplate.execute("DROP TABLE " + table);
+    });
+    log.info("Dropped expired partition {}", table);
+  }
+
+  /**
+   * Gets all range partitions of the DCC Registration table.
+   */
+  private List<Partition> partitions() {
+    return jdbcTemplate.query(
+      "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), i.inhdetachpending FROM pg_inherits i"
+        + " JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent"
+        + " WHERE p.relname = ?",
+      (resultSet, rowNumber) -> Partition.of(resultSet.getString(1), resultSet.getString(2), resultSet.getBoolean(3)),
+      TABLE).stream()
+      .filter(Objects::nonNull)
+      .toList();
+  }
+
+  /**
+   * Gets the tables of former partitions which are not attached to the DCC Registration table anymore.
+   */
+  private List<String> detachedPartitions() {
+    return jdbcTemplate.queryForList(
+      "SELECT relname FROM pg_class WHERE relkind = 'r' AND NOT relispartition"
+        + " AND (relname LIKE '" + TABLE + "\\_p%' OR relname = '" + TABLE + "_legacy')",
+      String.class);
+  }
+
+  /**
+   * Time range of a partition. A missing lower bound means MINVALUE.
+   */
+  @Getter
+  @AllArgsConstructor
+  private static class Partition {
+
+    private static final Pattern BOUNDS =
+      Pattern.compile("FROM \\((MINVALUE|'([^']+)')\\) TO \\('([^']+)'\\)");
+
+    private final String name;
+
+    private final LocalDateTime from;
+
+    private final LocalDateTime to;
+
+    private final boolean detachPending;
+
+    boolean contains(LocalDateTime time) {
+      return (from == null || !from.isAfter(time)) && to.isAfter(time);
+    }
+
+    /**
+     * Parses the partition bound expression, e.g. FOR VALUES FROM ('2022-01-01 00:00:00') TO ('2022-02-01 00:00:00').
+     *
+     * @return the partition or null if it is no range partition with fixed upper bound.
+     */
+    static Partition of(String name, String bound, boolean detachPending) {
+      Matcher matcher = BOUNDS.matcher(bound == null ? "" : bound);
+      if (!matcher.find()) {
+        return null;
+      }
+
+      try {
+        return new Partition(name, matcher.group(2) == null ? null : parse(matcher.group(2)), parse(matcher.group(3)),
+          detachPending);
+      } catch (DateTimeParseException e) {
+        log.warn("Could not parse bounds of partition {}: {}", name, bound);
+        return null;
+      }
+    }
+
+    private static LocalDateTime parse(String timestamp) {
+      return LocalDateTime.parse(timestamp.replace(' ', 'T'));
+    }
+  }
+}
@@ -23,37 +23,70 @@
 import app.coronawarn.dcc.client.VerificationServerClient;
 import app.coronawarn.dcc.domain.DccErrorReason;
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.domain.DccRegistrationState;
+import app.coronawarn.dcc.domain.PendingDccRegistration;
 import app.coronawarn.dcc.model.InternalTestResult;
 import app.coronawarn.dcc.model.LabTestResult;
 import app.coronawarn.dcc.model.RegistrationToken;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
 import feign.FeignException;
 import jakarta.validation.constraints.NotNull;
-import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DccRegistrationService {
 
+  /**
+   * Number of pooled KeyFactory instances per algorithm, covers the parallelism of the CPU bound key parsing.
+   */
+  private static final int KEY_FACTORY_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+  private static final KeyFactoryPool RSA_KEY_FACTORY =
+    new KeyFactoryPool(SubjectPublicKeyInfoReader.RSA, KEY_FACTORY_POOL_SIZE);
+
+  private static final KeyFactoryPool EC_KEY_FACTORY =
+    new KeyFactoryPool(SubjectPublicKeyInfoReader.EC, KEY_FACTORY_POOL_SIZE);
+
   private final DccRegistrationRepository dccRegistrationRepository;
 
   private final VerificationServerClient verificationServerClient;
 
   private final DcciGeneratorService dcciGeneratorService;
 
+  private final DccRegistrationStatusCacheService dccRegistrationStatusCacheService;
+
+  private final DccRegistrationNotificationService dccRegistrationNotificationService;
+
+  private final VerificationResultCacheService verificationResultCacheService;
+
+  /**
+   * DCC Registrations which are currently created by RegistrationToken.
+   */
+  private final ConcurrentMap<String, CompletableFuture<DccRegistration>> registrationsInFlight =
+    new ConcurrentHashMap<>();
+
   /**
    * Create a new DCC registration with a RegistrationToken and a PublicKey.
    *
@@ -64,7 +97,61 @@ public class DccRegistrationService {
    */
   public DccRegistration createDccRegistration(String registrationToken, PublicKey publicKey)
     throws DccRegistrationException {
-    checkRegistrationTokenAlreadyExists(registrationToken);
+    CompletableFuture<DccRegistration> registrationFuture = new CompletableFuture<>();
+    CompletableFuture<DccRegistration> registrationInFlight =
+      registrationsInFlight.putIfAbsent(registrationToken, registrationFuture);
+
+    if (registrationInFlight != null) {
+      return awaitDccRegistration(registrationToken, publicKey, registrationInFlight);
+    }
+
+    try {
+      DccRegistration registration = saveDccRegistration(registrationToken, publicKey);
+      registrationFuture.complete(registration);
+      return registration;
+    } catch (Throwable e) {
+      registrationFuture.completeExceptionally(e);
+      throw e;
+    } finally {
+      registrationsInFlight.remove(registrationToken, registrationFuture);
+    }
+  }
+
+  /**
+   * Waits for a concurrent creation of a DCC Registration with the same RegistrationToken (e.g. an app retry) and
+   * shares its result, so a retry with the same PublicKey succeeds idempotently while the first request is in
+   * progress. A different PublicKey is handled like a RegistrationToken which already exists. Requests arriving after
+   * the first request has finished are not affected and fail with REGISTRATION_TOKEN_ALREADY_EXISTS as before.
+   */
+  private DccRegistration awaitDccRegistration(
+    String registrationToken, PublicKey publicKey, CompletableFuture<DccRegistration> registrationInFlight)
+    throws DccRegistrationException {
+    log.info("Waiting for concurrent DCC Registration of RegistrationToken {}", registrationToken);
+
+    DccRegistration registration;
+    try {
+      registration = registrationInFlight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof DccRegistrationException registrationException) {
+        throw new DccRegistrationException(registrationException.getReason());
+      } else if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      } else if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw e;
+    }
+
+    if (!Base64.getEncoder().encodeToString(publicKey.getEncoded()).equals(registration.getPublicKey())) {
+      log.error("A DCC Registration already exists for RegistrationToken {}", registrationToken);
+      throw new DccRegistrationException(DccRegistrationException.Reason.REGISTRATION_TOKEN_ALREADY_EXISTS);
+    }
+
+    return registration;
+  }
+
+  private DccRegistration saveDccRegistration(String registrationToken, PublicKey publicKey)
+    throws DccRegistrationException {
     InternalTestResult testResult = checkRegistrationTokenIsValid(registrationToken);
 
     DccRegistration dccRegistration = DccRegistration.builder()
@@ -75,7 +162,13 @@ public DccRegistration createDccRegistration(String registrationToken, PublicKey
       .dcci(dcciGeneratorService.newDcci())
       .build();
 
-    DccRegistration registration = dccRegistrationRepository.save(dccRegistration);
+    DccRegistration registration;
+    try {
+      registration = dccRegistrationRepository.saveAndFlush(dccRegistration);
+    } catch (DataIntegrityViolationException e) {
+      checkRegistrationTokenAlreadyExists(registrationToken);
+      throw e;
+    }
 
     log.info("Saved new DCC Registration for RegistrationToken {}", registrationToken);
 
@@ -88,10 +181,36 @@ public DccRegistration createDccRegistration(String registrationToken, PublicKey
    * @param labId labId to search for.
    * @return List of matching DCC Registrations.
    */
-  public List<DccRegistration> findPendingDccByLabId(String labId) {
+  public List<PendingDccRegistration> findPendingDccByLabId(String labId) {
     return dccRegistrationRepository.findByLabIdAndDccHashIsNullAndPublicKeyIsNotNull(labId);
   }
 
+  /**
+   * Queries the database for one page of DCC Registrations without signed DCC by Lab ID ordered by ID.
+   *
+   * @param labId   labId to search for.
+   * @param afterId only DCC Registrations with a greater ID are returned.
+   * @param limit   maximum number of DCC Registrations to return.
+   * @return List of matching DCC Registrations.
+   */
+  public List<PendingDccRegistration> findPendingDccByLabId(String labId, long afterId, int limit) {
+    return dccRegistrationRepository.findPendingByLabIdAfterId(labId, afterId, PageRequest.of(0, limit));
+  }
+
+  /**
+   * Streams all DCC Registrations without signed DCC by Lab ID ordered by ID from the database.
+   * The database cursor is kept open until all DCC Registrations have been passed to the consumer.
+   *
+   * @param labId    labId to search for.
+   * @param consumer consumer of the matching DCC Registrations.
+   */
+  @Transactional(readOnly = true)
+  public void streamPendingDccByLabId(String labId, Consumer<PendingDccRegistration> consumer) {
+    try (Stream<PendingDccRegistration> registrations = dccRegistrationRepository.streamPendingByLabId(labId)) {
+      registrations.forEach(consumer);
+    }
+  }
+
   /**
    * Queries the database for a DCC Registration by Hashed GUID aka Test ID.
    *
@@ -102,6 +221,26 @@ public Optional<DccRegistration> findByHashedGuid(String hashedGuid) {
     return dccRegistrationRepository.findByHashedGuid(hashedGuid);
   }
 
+  /**
+   * Queries the database for DCC Registrations by multiple Hashed GUIDs aka Test IDs.
+   *
+   * @param hashedGuids hashedGuids to search for.
+   * @return List of matching DCC Registrations.
+   */
+  public List<DccRegistration> findByHashedGuids(Collection<String> hashedGuids) {
+    return dccRegistrationRepository.findByHashedGuidIn(hashedGuids);
+  }
+
+  /**
+   * Queries the database for the state of a DCC Registration by RegistrationToken.
+   *
+   * @param registrationToken registrationToken to search for.
+   * @return Optional containing the state of the DCC Registration.
+   */
+  public Optional<DccRegistrationState> findStateByRegistrationToken(String registrationToken) {
+    return dccRegistrationRepository.findStateByRegistrationToken(registrationToken);
+  }
+
   /**
    * Queries the database for a DCC Registration by RegistrationToken.
    *
@@ -121,6 +260,7 @@ public Optional<DccRegistration> findByRegistrationToken(String registrationToke
    * @param encryptedDek the encrypted Data Encryption Key.
    * @param partnerId    the ID of the partner who has issued the DCC.
    */
+  @Transactional
   public DccRegistration updateDccRegistration(
     DccRegistration registration, String dccHash, String encryptedDcc, String encryptedDek, String partnerId) {
 
@@ -129,7 +269,9 @@ public DccRegistration updateDccRegistration(
     registration.setEncryptedDataEncryptionKey(encryptedDek);
     registration.setPartnerId(partnerId);
 
-    return dccRegistrationRepository.save(registration);
+    DccRegistration updatedRegistration = dccRegistrationRepository.save(registration);
+    registrationChanged(updatedRegistration.getRegistrationToken());
+    return updatedRegistration;
   }
 
   /**
@@ -140,13 +282,18 @@ public DccRegistration updateDccRegistration(
    * @param reason       the new Error Reason
    * @return the updated Registration Entity
    */
+  @Transactional
   public DccRegistration setError(DccRegistration registration, DccErrorReason reason) {
     registration.setDcc(null);
+    registration.setDownloadDcc(null);
     registration.setDccHash(null);
     registration.setPartnerId(null);
     registration.setEncryptedDataEncryptionKey(null);
     registration.setError(reason);
-    return dccRegistrationRepository.save(registration);
+
+    DccRegistration updatedRegistration = dccRegistrationRepository.save(registration);
+    registrationChanged(updatedRegistration.getRegistrationToken());
+    return updatedRegistration;
   }
 
   /**
@@ -156,23 +303,59 @@ public DccRegistration setError(DccRegistration registration, DccErrorReason rea
    * @param dcc          the base64 encoded DCC
    * @return the updated Registration Entity
    */
+  @Transactional
   public DccRegistration setDcc(DccRegistration registration, @NotNull String dcc) {
     registration.setError(null);
     registration.setDcc(dcc);
-    return dccRegistrationRepository.save(registration);
+
+    DccRegistration updatedRegistration = dccRegistrationRepository.save(registration);
+    registrationChanged(updatedRegistration.getRegistrationToken());
+    return updatedRegistration;
   }
 
-  private void checkRegistrationTokenAlreadyExists(String registrationToken) throws DccRegistrationException {
-    Optional<DccRegistration> registrationOptional =
-      dccRegistrationRepository.findByRegistrationToken(registrationToken);
+  /**
+   * Announces a change within the writing transaction, a failed notification rolls the change back.
+   */
+  private void registrationChanged(String registrationToken) {
+    dccRegistrationStatusCacheService.invalidate(registrationToken);
+    dccRegistrationNotificationService.publish(registrationToken);
+  }
 
-    if (registrationOptional.isPresent()) {
+  /**
+   * Checks whether a DCC Registration with the RegistrationToken already exists.
+   * This is called before a test result is requested from Verification Server, so that duplicates (e.g. retries of
+   * the CWA-App after a successful upload) neither reach Verification Server nor get its error, and after a failed
+   * insert.
+   */
+  private void checkRegistrationTokenAlreadyExists(String registrationToken) throws DccRegistrationException {
+    if (dccRegistrationRepository.existsByRegistrationToken(registrationToken)) {
       log.error("A DCC Registration already exists for RegistrationToken {}", registrationToken);
       throw new DccRegistrationException(DccRegistrationException.Reason.REGISTRATION_TOKEN_ALREADY_EXISTS);
     }
   }
 
   private InternalTestResult checkRegistrationTokenIsValid(String registrationToken) throws DccRegistrationException {
+    Optional<DccRegistrationException.Reason> cachedRejection =
+      verificationResultCacheService.getRejection(registrationToken);
+    if (cachedRejection.isPresent()) {
+      throw new DccRegistrationException(cachedRejection.get());
+    }
+
+    InternalTestResult testResult = verificationResultCacheService.getTestResult(registrationToken).orElse(null);
+
+    if (testResult == null) {
+      checkRegistrationTokenAlreadyExists(registrationToken);
+      testResult = requestTestResult(registrationToken);
+    }
+
+    if (testResult.getLabId() == null) {
+      throw new DccRegistrationException(DccRegistrationException.Reason.NO_LAB_ID);
+    }
+
+    return testResult;
+  }
+
+  private InternalTestResult requestTestResult(String registrationToken) throws DccRegistrationException {
     InternalTestResult testResult;
 
     try {
@@ -181,9 +364,11 @@ private InternalTestResult checkRegistrationTokenIsValid(String registrationToke
       log.info("Failed to validate registrationToken. Http Status from Verification Server: {}", e.status());
 
       if (e.status() == HttpStatus.FORBIDDEN.value()) {
-        throw new DccRegistrationException(DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_FORBIDDEN);
+        throw rejectRegistrationToken(
+          registrationToken, DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_FORBIDDEN);
       } else if (e.status() == HttpStatus.NOT_FOUND.value()) {
-        throw new DccRegistrationException(DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_NOT_FOUND);
+        throw rejectRegistrationToken(
+          registrationToken, DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_NOT_FOUND);
       } else {
         throw new DccRegistrationException(DccRegistrationException.Reason.VERIFICATION_SERVER_ERROR);
       }
@@ -194,13 +379,16 @@ private InternalTestResult checkRegistrationTokenIsValid(String registrationToke
       throw new DccRegistrationException(DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_FORBIDDEN);
     }
 
-    if (testResult.getLabId() == null) {
-      throw new DccRegistrationException(DccRegistrationException.Reason.NO_LAB_ID);
-    }
-
+    verificationResultCacheService.putTestResult(registrationToken, testResult);
     return testResult;
   }
 
+  private DccRegistrationException rejectRegistrationToken(
+    String registrationToken, DccRegistrationException.Reason reason) {
+    verificationResultCacheService.putRejection(registrationToken, reason);
+    return new DccRegistrationException(reason);
+  }
+
   /**
    * Parse base64 encoded public key.
    * Supported algorithm: RSA, EC
@@ -211,28 +399,21 @@ private InternalTestResult checkRegistrationTokenIsValid(String registrationToke
   public PublicKey parsePublicKey(String publicKeyBase64) {
     byte[] decoded = Base64.getDecoder().decode(publicKeyBase64);
 
-    // Parse PublicKey as RSA Key
-    PublicKey publicKey = parsePublicKey(decoded, "rsa");
-
-    // Parse PublicKey as EC Key
-    publicKey = publicKey != null ? publicKey : parsePublicKey(decoded, "ec");
+    // Read algorithm from SubjectPublicKeyInfo instead of trying every KeyFactory
+    String algorithm = SubjectPublicKeyInfoReader.algorithm(decoded);
 
-    if (publicKey == null) {
+    if (algorithm == null) {
       log.info("Could not parse PublicKey with any algorithm");
       return null;
-    } else {
-      return publicKey;
     }
-  }
 
-  private PublicKey parsePublicKey(byte[] publicKeyBytes, String alg) {
-    KeyFactory keyFactory;
-    try {
-      keyFactory = KeyFactory.getInstance(alg);
-      return keyFactory.generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+    KeyFactoryPool keyFactoryPool = SubjectPublicKeyInfoReader.RSA.equals(algorithm)
+      ? RSA_KEY_FACTORY : EC_KEY_FACTORY;
 
-    } catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
-      log.debug("Could not parse PublicKey with algorithm {}", alg);
+    try {
+      return keyFactoryPool.generatePublic(new X509EncodedKeySpec(decoded));
+    } catch (InvalidKeySpecException e) {
+      log.info("Could not parse PublicKey with algorithm {}", algorithm);
       return null;
     }
   }
@@ -0,0 +1,226 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.DccErrorReason;
+import app.coronawarn.dcc.domain.DccRegistrationStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process cache of DCC Registrations by RegistrationToken as seen by the CWA-App when claiming the DCC.
+ *
+ * <p>Without change notifications only statuses which can be answered without any data of the registration
+ * (PENDING and GONE) are cached with a short time to live. If change notifications are enabled and the notification
+ * connection is established, all statuses including the DCC data are cached with a long time to live. Entries are
+ * then invalidated by {@link DccRegistrationNotificationListener}.
+ *
+ * <p>Loaders take the current invalidation generation before reading the DCC Registration from database. An entry is
+ * not cached if the RegistrationToken has been invalidated after that, so that invalidations arriving while the
+ * DCC Registration is loaded are not lost.
+ */
+@Service
+@Slf4j
+public class DccRegistrationStatusCacheService {
+
+  private static final Duration INVALIDATION_RETENTION = Duration.ofMinutes(1);
+
+  private final boolean enabled;
+
+  private final boolean notificationEnabled;
+
+  private volatile boolean notificationConnected = false;
+
+  private final Cache<String, Entry> cache;
+
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * Generation of the last invalidation per RegistrationToken. Kept long enough to cover the load of an entry.
+   */
+  private final Cache<String, Long> invalidations;
+
+  private volatile long allInvalidatedGeneration = 0;
+
+  /**
+   * Creates the cache with the configured size and time to live.
+   *
+   * @param config the application config
+   */
+  public DccRegistrationStatusCacheService(DccApplicationConfig config) {
+    enabled = config.getClaimCache().isEnabled();
+    notificationEnabled = config.getClaimCache().getNotification().isEnabled();
+
+    long ttl = notificationEnabled
+      ? config.getClaimCache().getNotification().getTtl()
+      : config.getClaimCache().getTtl();
+
+    cache = Caffeine.newBuilder()
+      .maximumSize(config.getClaimCache().getMaximumSize())
+      .expireAfterWrite(Duration.ofMillis(ttl))
+      .build();
+
+    invalidations = Caffeine.newBuilder()
+      .maximumSize(config.getClaimCache().getMaximumSize())
+      .expireAfterWrite(INVALIDATION_RETENTION)
+      .build();
+  }
+
+  /**
+   * Gets the current invalidation generation. Has to be taken before the DCC Registration is read from database.
+   *
+   * @return the current generation
+   */
+  public long currentGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Gets the cached DCC Registration.
+   *
+   * @param registrationToken the RegistrationToken of the DCC Registration
+   * @return Optional containing the cached entry.
+   */
+  public Optional<Entry> get(String registrationToken) {
+    if (!isActive() || registrationToken == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(cache.getIfPresent(registrationToken));
+  }
+
+  /**
+   * Puts a DCC Registration into the cache if it is cacheable.
+   *
+   * @param registrationToken the RegistrationToken of the DCC Registration
+   * @param entry             the current state of the DCC Registration
+   */
+  public void put(String registrationToken, Entry entry) {
+    put(registrationToken, entry, currentGeneration());
+  }
+
+  /**
+   * Puts a DCC Registration into the cache if it is cacheable and has not been invalidated since it was loaded.
+   *
+   * @param registrationToken the RegistrationToken of the DCC Registration
+   * @param entry             the state of the DCC Registration read from database
+   * @param loadedGeneration  the generation taken before the DCC Registration was read
+   */
+  public void put(String registrationToken, Entry entry, long loadedGeneration) {
+    if (!isActive() || registrationToken == null) {
+      return;
+    }
+
+    if (!notificationEnabled
+      && entry.getStatus() != DccRegistrationStatus.PENDING
+      && entry.getStatus() != DccRegistrationStatus.GONE) {
+      cache.invalidate(registrationToken);
+      return;
+    }
+
+    if (isInvalidatedSince(registrationToken, loadedGeneration)) {
+      return;
+    }
+
+    cache.put(registrationToken, entry);
+
+    // An invalidation may have been recorded between the check and the put. It removes the entry itself if it
+    // is recorded after this second check.
+    if (isInvalidatedSince(registrationToken, loadedGeneration)) {
+      cache.invalidate(registrationToken);
+    }
+  }
+
+  /**
+   * Removes the cached DCC Registration.
+   *
+   * @param registrationToken the RegistrationToken of the DCC Registration
+   */
+  public void invalidate(String registrationToken) {
+    if (registrationToken != null) {
+      invalidations.put(registrationToken, generation.incrementAndGet());
+      cache.invalidate(registrationToken);
+    }
+  }
+
+  /**
+   * Removes all cached DCC Registrations.
+   */
+  public void invalidateAll() {
+    log.debug("Invalidating all cached DCC Registrations");
+    allInvalidatedGeneration = generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  /**
+   * Sets whether the connection to receive change notifications is established.
+   * The cache is flushed on every change because notifications may have been missed.
+   *
+   * @param connected true if change notifications are received.
+   */
+  public void setNotificationConnected(boolean connected) {
+    notificationConnected = connected;
+    invalidateAll();
+  }
+
+  private boolean isInvalidatedSince(String registrationToken, long loadedGeneration) {
+    Long invalidatedGeneration = invalidations.getIfPresent(registrationToken);
+    return allInvalidatedGeneration > loadedGeneration
+      || (invalidatedGeneration != null && invalidatedGeneration > loadedGeneration);
+  }
+
+  private boolean isActive() {
+    return enabled && (!notificationEnabled || notificationConnected);
+  }
+
+  /**
+   * Cached state of a DCC Registration.
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class Entry {
+
+    private final DccRegistrationStatus status;
+
+    private final DccErrorReason error;
+
+    /**
+     * Base64 encoded encrypted Data Encryption Key (only for status READY).
+     */
+    private final String dek;
+
+    /**
+     * Base64 encoded DCC with encrypted payload (only for status READY).
+     */
+    private final String dcc;
+
+    public static Entry of(DccRegistrationStatus status) {
+      return new Entry(status, null, null, null);
+    }
+  }
+}
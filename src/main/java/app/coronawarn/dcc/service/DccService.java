@@ -21,10 +21,15 @@
 package app.coronawarn.dcc.service;
 
 import app.coronawarn.dcc.client.SigningApiClient;
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.DccErrorReason;
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.exception.DccServerException;
 import com.upokecenter.cbor.CBORObject;
 import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
 import java.util.Base64;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -44,6 +49,14 @@ public class DccService {
 
   private final HashingService hashingService;
 
+  private final DccApplicationConfig config;
+
+  private final SigningExecutor signingExecutor;
+
+  private final CircuitBreaker signingApiCircuitBreaker;
+
+  private final Retry signingApiRetry;
+
   /**
    * Creates signed data for a DCCRegistration.
    * This Endpoints queries the SigningAPI and signs the hash assigned to this Registration.
@@ -51,43 +64,95 @@ public class DccService {
    *
    * @param registration the DccRegistration to sign the DCC for.
    * @return DccRegistration
-   * @throws DccGenerateException if signing went wrong.
+   * @throws DccGenerateException if signing went wrong or the Signing API Circuit Breaker is open.
+   * @throws DccServerException   if too many signings are pending.
    */
   public DccRegistration sign(DccRegistration registration) throws DccGenerateException {
+    return sign(registration, false);
+  }
+
+  /**
+   * Creates signed data for a DCCRegistration.
+   * Server errors of the Signing API and calls rejected by its open Circuit Breaker can be postponed instead of
+   * marking the registration as failed. This is used by the background signing of asynchronously uploaded DCC, which
+   * retries the registration in the next cycle.
+   *
+   * @param registration          the DccRegistration to sign the DCC for.
+   * @param postponeOnServerError throw a {@link DccServerException} on server errors without setting an error.
+   * @return DccRegistration
+   * @throws DccGenerateException if signing went wrong.
+   * @throws DccServerException   if too many signings are pending or a server error (including an open Signing API
+   *                              Circuit Breaker) is postponed.
+   */
+  public DccRegistration sign(DccRegistration registration, boolean postponeOnServerError)
+    throws DccGenerateException {
 
     byte[] coseBytes;
     try {
       byte[] hashBytes = Hex.decode(registration.getDccHash());
       String hashBase64 = Base64.getEncoder().encodeToString(hashBytes);
 
-      coseBytes = callSigningApiWithRetry(
-        hashBase64,
-        hashingService.hash(registration.getLabId()),
-        hashingService.hash(registration.getDcci()));
+      String hashedLabId = hashingService.hash(registration.getLabId());
+      String hashedDcci = hashingService.hash(registration.getDcci());
+
+      coseBytes = signingExecutor.execute(() -> callSigningApi(hashBase64, hashedLabId, hashedDcci));
+    } catch (CallNotPermittedException e) {
+      log.warn("Failed to sign DCC. Signing API Circuit Breaker is open.");
+
+      if (postponeOnServerError) {
+        // Signing API was not called, the accepted DCC is signed after the Circuit Breaker has closed
+        throw new DccServerException(HttpStatus.SERVICE_UNAVAILABLE, "Signing API is unavailable.");
+      } else {
+        dccRegistrationService.setError(registration, DccErrorReason.SIGNING_SERVER_ERROR);
+        throw new DccGenerateException(DccErrorReason.SIGNING_SERVER_ERROR);
+      }
     } catch (FeignException e) {
       log.error("Failed to sign DCC. Http Status Code: {}, Message: {}", e.status(), e.getMessage());
 
       if (e.status() > 0 && HttpStatus.valueOf(e.status()).is4xxClientError()) {
         dccRegistrationService.setError(registration, DccErrorReason.SIGNING_CLIENT_ERROR);
         throw new DccGenerateException(DccErrorReason.SIGNING_CLIENT_ERROR);
+      } else if (postponeOnServerError) {
+        throw new DccServerException(HttpStatus.SERVICE_UNAVAILABLE, "Signing API failed, signing is postponed.");
       } else {
         dccRegistrationService.setError(registration, DccErrorReason.SIGNING_SERVER_ERROR);
         throw new DccGenerateException(DccErrorReason.SIGNING_SERVER_ERROR);
       }
     }
 
-    return dccRegistrationService.setDcc(registration, Base64.getEncoder().encodeToString(coseBytes));
+    String partialDcc = Base64.getEncoder().encodeToString(coseBytes);
+
+    registration.setDownloadDcc(config.isPrecomputeDownloadDcc()
+      ? buildDownloadDcc(partialDcc, registration.getDccEncryptedPayload()) : null);
+
+    return dccRegistrationService.setDcc(registration, partialDcc);
   }
 
-  private byte[] callSigningApiWithRetry(String hashBase64, String hashedLabId, String hashedDcci) {
+  /**
+   * Builds the DCC which can be downloaded by the CWA-App by inserting the encrypted payload into the partial DCC.
+   * If the DCC cannot be built null is returned and the download DCC will be built on claim.
+   */
+  private String buildDownloadDcc(String partialDcc, String encryptedPayload) {
+    if (encryptedPayload == null) {
+      return null;
+    }
+
     try {
-      return signingApiClient.sign(hashBase64, hashedLabId, hashedDcci);
-    } catch (FeignException e) {
-      log.info("First try of calling Signing API failed. Status Code: {}, Message: {}", e.status(), e.getMessage());
-      return signingApiClient.sign(hashBase64, hashedLabId, hashedDcci);
+      return replaceDccPayload(partialDcc, encryptedPayload);
+    } catch (RuntimeException e) {
+      log.warn("Failed to precompute download DCC: {}", e.getMessage());
+      return null;
     }
   }
 
+  /**
+   * Calls the Signing API through the Circuit Breaker. Server and IO errors are retried with backoff.
+   */
+  private byte[] callSigningApi(String hashBase64, String hashedLabId, String hashedDcci) {
+    return Retry.decorateSupplier(signingApiRetry, CircuitBreaker.decorateSupplier(signingApiCircuitBreaker,
+      () -> signingApiClient.sign(hashBase64, hashedLabId, hashedDcci))).get();
+  }
+
 
   /**
    * Parses a COSE SIGN1_MESSAGE and replaces the payload Binary-String with a new Payload.
@@ -97,9 +162,19 @@ private byte[] callSigningApiWithRetry(String hashBase64, String hashedLabId, St
    * @return base64 encoded COSE SIGN1_MESSAGE
    */
   public String replaceDccPayload(String dcc, String newPayload) {
+    byte[] dccBytes = Base64.getDecoder().decode(dcc);
     byte[] newPayloadBytes = Base64.getDecoder().decode(newPayload);
 
-    CBORObject cbor = CBORObject.DecodeFromBytes(Base64.getDecoder().decode(dcc));
+    if (config.isCosePayloadSplice()) {
+      byte[] splicedDcc = CosePayloadSplicer.splice(dccBytes, newPayloadBytes);
+
+      if (splicedDcc != null) {
+        return Base64.getEncoder().encodeToString(splicedDcc);
+      }
+      log.debug("Could not splice payload into COSE structure, falling back to CBOR decoding");
+    }
+
+    CBORObject cbor = CBORObject.DecodeFromBytes(dccBytes);
     cbor.set(2, CBORObject.FromObject(newPayloadBytes));
 
     return Base64.getEncoder().encodeToString(cbor.EncodeToBytes());
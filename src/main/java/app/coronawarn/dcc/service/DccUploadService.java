@@ -0,0 +1,217 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.domain.DccErrorReason;
+import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.exception.DccServerException;
+import app.coronawarn.dcc.model.DccBatchUploadResult;
+import app.coronawarn.dcc.model.DccUploadRequest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DccUploadService {
+
+  private final DccRegistrationService dccRegistrationService;
+
+  private final DccService dccService;
+
+  private final LabIdClaimService labIdClaimService;
+
+  private final ExecutorService dccUploadExecutor;
+
+  /**
+   * Stores the uploaded DCC data in a DCC Registration and signs the DCC.
+   * The LabId of the DCC Registration needs to be claimed by the partner before.
+   *
+   * @param dccRegistration the DCC Registration to upload the DCC for.
+   * @param uploadRequest   the uploaded DCC data.
+   * @param partnerId       the ID of the partner who has issued the DCC.
+   * @return the signed DCC Registration
+   * @throws DccServerException              if a DCC already exists or the uploaded data is invalid.
+   * @throws DccService.DccGenerateException if signing of the DCC failed.
+   */
+  public DccRegistration upload(DccRegistration dccRegistration, DccUploadRequest uploadRequest, String partnerId)
+    throws DccService.DccGenerateException {
+
+    setUploadedData(dccRegistration, uploadRequest, partnerId);
+
+    try {
+      dccRegistration = dccService.sign(dccRegistration);
+    } catch (DccService.DccGenerateException e) {
+
+      // Delete DCC information if signing failed
+      dccRegistrationService.updateDccRegistration(
+        dccRegistration,
+        null,
+        null,
+        null,
+        partnerId);
+
+      throw e;
+    }
+
+    return dccRegistrationService.updateDccRegistration(
+      dccRegistration,
+      uploadRequest.getDccHash(),
+      uploadRequest.getEncryptedDcc(),
+      uploadRequest.getDataEncryptionKey(),
+      partnerId);
+  }
+
+  /**
+   * Stores the uploaded DCC data in a DCC Registration without signing the DCC.
+   * The DCC will be signed in background by {@link DccAsyncSigningService}.
+   *
+   * @param dccRegistration the DCC Registration to upload the DCC for.
+   * @param uploadRequest   the uploaded DCC data.
+   * @param partnerId       the ID of the partner who has issued the DCC.
+   * @return the updated DCC Registration
+   * @throws DccServerException if a DCC already exists or the uploaded data is invalid.
+   */
+  public DccRegistration accept(DccRegistration dccRegistration, DccUploadRequest uploadRequest, String partnerId) {
+    setUploadedData(dccRegistration, uploadRequest, partnerId);
+
+    return dccRegistrationService.updateDccRegistration(
+      dccRegistration,
+      uploadRequest.getDccHash(),
+      uploadRequest.getEncryptedDcc(),
+      uploadRequest.getDataEncryptionKey(),
+      partnerId);
+  }
+
+  /**
+   * Signs the DCC of a DCC Registration whose DCC data has been accepted before.
+   * If the Signing API is unavailable the DCC data is kept, so that signing is retried in the next cycle.
+   *
+   * @param dccRegistration the DCC Registration to sign the DCC for.
+   * @return the signed DCC Registration
+   * @throws DccService.DccGenerateException if signing of the DCC failed.
+   * @throws DccServerException              if signing of the DCC is postponed.
+   */
+  public DccRegistration signAccepted(DccRegistration dccRegistration) throws DccService.DccGenerateException {
+    String partnerId = dccRegistration.getPartnerId();
+
+    try {
+      return dccService.sign(dccRegistration, true);
+    } catch (DccService.DccGenerateException e) {
+
+      // Delete DCC information if signing failed
+      dccRegistrationService.updateDccRegistration(
+        dccRegistration,
+        null,
+        null,
+        null,
+        partnerId);
+
+      throw e;
+    }
+  }
+
+  /**
+   * Uploads multiple DCC. DCC Registrations are loaded with a single query, the LabId Claim is checked once per
+   * LabId and the DCC are signed in parallel.
+   *
+   * @param uploadRequests the uploaded DCC data by Test ID.
+   * @param partnerId      the ID of the partner who has issued the DCC.
+   * @return the result of each upload by Test ID.
+   */
+  public Map<String, DccBatchUploadResult> uploadBatch(Map<String, DccUploadRequest> uploadRequests, String partnerId) {
+    Map<String, DccRegistration> dccRegistrations = dccRegistrationService.findByHashedGuids(uploadRequests.keySet())
+      .stream()
+      .collect(Collectors.toMap(DccRegistration::getHashedGuid, Function.identity(), (a, b) -> a));
+
+    Map<String, Boolean> labIdClaims = new HashMap<>();
+    Map<String, CompletableFuture<DccBatchUploadResult>> results = new LinkedHashMap<>();
+
+    uploadRequests.forEach((testId, uploadRequest) -> {
+      DccRegistration dccRegistration = dccRegistrations.get(testId);
+
+      if (dccRegistration == null) {
+        results.put(testId, CompletableFuture.completedFuture(failed(HttpStatus.NOT_FOUND, null)));
+      } else if (!labIdClaims.computeIfAbsent(
+        dccRegistration.getLabId(), labId -> labIdClaimService.getClaim(partnerId, labId))) {
+        results.put(testId, CompletableFuture.completedFuture(failed(HttpStatus.FORBIDDEN, null)));
+      } else {
+        results.put(testId, CompletableFuture.supplyAsync(
+          () -> uploadBatchItem(dccRegistration, uploadRequest, partnerId), dccUploadExecutor));
+      }
+    });
+
+    Map<String, DccBatchUploadResult> resultMap = new LinkedHashMap<>();
+    results.forEach((testId, result) -> resultMap.put(testId, result.join()));
+
+    return resultMap;
+  }
+
+  private DccBatchUploadResult uploadBatchItem(
+    DccRegistration dccRegistration, DccUploadRequest uploadRequest, String partnerId) {
+
+    try {
+      DccRegistration signedRegistration = upload(dccRegistration, uploadRequest, partnerId);
+      return new DccBatchUploadResult(HttpStatus.OK.value(), signedRegistration.getDcc(), null);
+    } catch (DccServerException e) {
+      return failed(e.getHttpStatus(), null);
+    } catch (DccService.DccGenerateException e) {
+      return failed(HttpStatus.INTERNAL_SERVER_ERROR, e.getReason());
+    } catch (RuntimeException e) {
+      log.error("Failed to upload DCC: {}", e.getMessage());
+      return failed(HttpStatus.INTERNAL_SERVER_ERROR, null);
+    }
+  }
+
+  private void setUploadedData(DccRegistration dccRegistration, DccUploadRequest uploadRequest, String partnerId) {
+    if (dccRegistration.getDccHash() != null) {
+      throw new DccServerException(HttpStatus.CONFLICT, "DCC already exists");
+    }
+
+    try {
+      Base64.getDecoder().decode(uploadRequest.getDataEncryptionKey());
+      Base64.getDecoder().decode(uploadRequest.getEncryptedDcc());
+    } catch (IllegalArgumentException e) {
+      dccRegistrationService.setError(dccRegistration, DccErrorReason.LAB_INVALID_RESPONSE);
+
+      throw new DccServerException(HttpStatus.BAD_REQUEST, "Invalid Base64 in DEK or encrypted DCC.");
+    }
+
+    dccRegistration.setDccHash(uploadRequest.getDccHash());
+    dccRegistration.setDccEncryptedPayload(uploadRequest.getEncryptedDcc());
+    dccRegistration.setEncryptedDataEncryptionKey(uploadRequest.getDataEncryptionKey());
+    dccRegistration.setPartnerId(partnerId);
+  }
+
+  private static DccBatchUploadResult failed(HttpStatus status, DccErrorReason reason) {
+    return new DccBatchUploadResult(status.value(), null, reason);
+  }
+}
@@ -0,0 +1,74 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+package app.coronawarn.dcc.service;
+
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.KeySpec;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Small pool of KeyFactory instances shared by all threads. KeyFactory instances are not thread safe, so each one is
+ * used by a single thread at a time. Requests on virtual threads would rebuild a per thread instance on every
+ * request, so instances are borrowed from the pool instead. If the pool is empty a new instance is created, if it is
+ * full a returned instance is discarded.
+ */
+final class KeyFactoryPool {
+
+  private final String algorithm;
+
+  private final BlockingQueue<KeyFactory> pool;
+
+  KeyFactoryPool(String algorithm, int size) {
+    this.algorithm = algorithm;
+    this.pool = new ArrayBlockingQueue<>(size);
+  }
+
+  /**
+   * Generates a public key with a pooled KeyFactory.
+   *
+   * @param keySpec the specification of the public key
+   * @return the public key
+   * @throws InvalidKeySpecException if the key specification cannot be parsed.
+   */
+  PublicKey generatePublic(KeySpec keySpec) throws InvalidKeySpecException {
+    KeyFactory keyFactory = pool.poll();
+    if (keyFactory == null) {
+      keyFactory = newKeyFactory();
+    }
+
+    try {
+      return keyFactory.generatePublic(keySpec);
+    } finally {
+      pool.offer(keyFactory);
+    }
+  }
+
+  private KeyFactory newKeyFactory() {
+    try {
+      return KeyFactory.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("KeyFactory " + algorithm + " is not available", e);
+    }
+  }
+}
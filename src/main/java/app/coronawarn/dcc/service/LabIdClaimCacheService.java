@@ -0,0 +1,166 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.LabIdClaim;
+import app.coronawarn.dcc.repository.LabIdClaimRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process cache of LabId Claims by LabId.
+ *
+ * <p>Usages of cached claims are collected and their last usage is written to database in batches. Claims expire
+ * after days of inactivity, so the last usage does not need to be more precise than the flush rate.
+ *
+ * <p>The cleanup job only invalidates the cache of the instance it runs on. Other instances evict a deleted claim with
+ * the first flush after its next usage, so a deleted claim is served at most for the flush rate after it has been
+ * used again and at most for the time to live otherwise. Both are far below the days of inactivity after which a
+ * claim is deleted.
+ */
+@Service
+@Slf4j
+public class LabIdClaimCacheService {
+
+  private static final int FLUSH_BATCH_SIZE = 1000;
+
+  private final LabIdClaimRepository labIdClaimRepository;
+
+  private final boolean enabled;
+
+  private final Cache<String, LabIdClaim> claims;
+
+  private final Set<Long> usedClaimIds = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates the cache with the configured size and time to live.
+   *
+   * @param labIdClaimRepository the LabId Claim repository
+   * @param config               the application config
+   */
+  public LabIdClaimCacheService(LabIdClaimRepository labIdClaimRepository, DccApplicationConfig config) {
+    this.labIdClaimRepository = labIdClaimRepository;
+
+    DccApplicationConfig.LabIdClaimCache cacheConfig = config.getLabIdClaim().getCache();
+    enabled = cacheConfig.isEnabled();
+
+    claims = Caffeine.newBuilder()
+      .maximumSize(cacheConfig.getMaximumSize())
+      .expireAfterWrite(Duration.ofMillis(cacheConfig.getTtl()))
+      .build();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Gets the cached claim of a LabId.
+   *
+   * @param labId the LabId
+   * @return Optional containing the cached claim.
+   */
+  public Optional<LabIdClaim> getClaim(String labId) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(claims.getIfPresent(labId));
+  }
+
+  /**
+   * Puts an existing claim into the cache.
+   *
+   * @param claim the persisted LabId Claim
+   */
+  public void putClaim(LabIdClaim claim) {
+    if (enabled) {
+      claims.put(claim.getLabId(), claim);
+    }
+  }
+
+  /**
+   * Marks a claim as used. The last usage is written to database with the next flush.
+   *
+   * @param claim the used LabId Claim
+   */
+  public void touch(LabIdClaim claim) {
+    usedClaimIds.add(claim.getId());
+  }
+
+  /**
+   * Writes the last usage of all claims used since the last flush to database.
+   */
+  @Scheduled(fixedDelayString = "${cwa.dcc.lab-id-claim.cache.flush-rate:60000}")
+  @PreDestroy
+  public void flush() {
+    if (usedClaimIds.isEmpty()) {
+      return;
+    }
+
+    List<Long> ids = new ArrayList<>(usedClaimIds);
+    usedClaimIds.removeAll(ids);
+
+    LocalDateTime now = LocalDateTime.now();
+    int updateCount = 0;
+    for (int i = 0; i < ids.size(); i += FLUSH_BATCH_SIZE) {
+      List<Long> batch = ids.subList(i, Math.min(i + FLUSH_BATCH_SIZE, ids.size()));
+      int batchUpdateCount = labIdClaimRepository.updateLastUsedByIdIn(batch, now);
+      if (batchUpdateCount < batch.size()) {
+        evictDeletedClaims(batch);
+      }
+      updateCount += batchUpdateCount;
+    }
+    log.debug("Updated last usage of {} LabId Claims", updateCount);
+  }
+
+  /**
+   * Evicts claims which have been deleted by the cleanup job of another instance.
+   */
+  private void evictDeletedClaims(List<Long> ids) {
+    Set<Long> deletedIds = new HashSet<>(ids);
+    labIdClaimRepository.findIdsByIdIn(ids).forEach(deletedIds::remove);
+
+    if (!deletedIds.isEmpty()) {
+      claims.asMap().values().removeIf(claim -> deletedIds.contains(claim.getId()));
+      log.info("Evicted {} deleted LabId Claims from cache", deletedIds.size());
+    }
+  }
+
+  /**
+   * Removes all cached claims.
+   */
+  public void invalidateAll() {
+    claims.invalidateAll();
+  }
+}
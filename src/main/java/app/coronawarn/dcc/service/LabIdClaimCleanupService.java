@@ -21,6 +21,7 @@
 package app.coronawarn.dcc.service;
 
 import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -29,6 +30,7 @@
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
@@ -37,6 +39,12 @@ public class LabIdClaimCleanupService {
 
   private final LabIdClaimRepository labIdClaimRepository;
 
+  private final LabIdClaimCounterRepository labIdClaimCounterRepository;
+
+  private final LabIdClaimCacheService labIdClaimCacheService;
+
+  private final TransactionTemplate transactionTemplate;
+
   private final DccApplicationConfig config;
 
   /**
@@ -47,11 +55,30 @@ public class LabIdClaimCleanupService {
   public void cleanup() {
     log.info("Start LabId Claim Cleanup...");
 
+    labIdClaimCacheService.flush();
+
     LocalDateTime threshold = LocalDateTime.now().minus(config.getLabIdClaim().getMaximumAge(), ChronoUnit.DAYS);
-    int deleteCount = labIdClaimRepository.deleteClaimsOlderThan(threshold);
+    int deleteCount = 0;
+    for (String partnerId : labIdClaimRepository.findPartnerIdsWithClaimsOlderThan(threshold)) {
+      deleteCount += transactionTemplate.execute(status -> deleteClaimsOfPartner(partnerId, threshold));
+    }
     log.info("Deleted {} Lab ID Claims", deleteCount);
+    if (deleteCount > 0) {
+      labIdClaimCacheService.invalidateAll();
+    }
 
     log.info("Finished LabId Claim Cleanup.");
   }
 
+  /**
+   * Deletes the expired claims of a partner and updates the claim counter of the partner. The counter is locked
+   * first, so that claims created concurrently are counted correctly.
+   */
+  private int deleteClaimsOfPartner(String partnerId, LocalDateTime threshold) {
+    labIdClaimCounterRepository.findByPartnerIdForUpdate(partnerId);
+    int deleteCount = labIdClaimRepository.deleteClaimsOfPartnerOlderThan(partnerId, threshold);
+    labIdClaimCounterRepository.recountClaims(partnerId);
+    return deleteCount;
+  }
+
 }
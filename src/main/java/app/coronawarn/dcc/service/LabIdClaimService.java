@@ -22,11 +22,17 @@
 
 import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.LabIdClaim;
+import app.coronawarn.dcc.domain.LabIdClaimCounter;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
+import java.time.LocalDateTime;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +41,12 @@ public class LabIdClaimService {
 
   private final LabIdClaimRepository labIdClaimRepository;
 
+  private final LabIdClaimCounterRepository labIdClaimCounterRepository;
+
+  private final LabIdClaimCacheService labIdClaimCacheService;
+
+  private final TransactionTemplate transactionTemplate;
+
   private final DccApplicationConfig config;
 
   /**
@@ -47,45 +59,103 @@ public class LabIdClaimService {
   public boolean getClaim(String partnerId, String labId) {
     log.debug("Trying to get claim for partnerId {} and labId {}", partnerId, labId);
 
+    if (labIdClaimCacheService.isEnabled()) {
+      Optional<LabIdClaim> claim = labIdClaimCacheService.getClaim(labId);
+      if (claim.isEmpty()) {
+        claim = labIdClaimRepository.findByLabId(labId);
+        claim.ifPresent(labIdClaimCacheService::putClaim);
+      }
+
+      if (claim.isPresent() && claim.get().getPartnerId().equals(partnerId)) {
+        log.debug("Found Claim for partnerId {} and labId {} with ID {}", partnerId, labId, claim.get().getId());
+        labIdClaimCacheService.touch(claim.get());
+        return true;
+      } else if (claim.isPresent()) {
+        log.debug("Found Claim for labId {} but for partner ID {} != {}", labId, claim.get().getPartnerId(),
+          partnerId);
+        return false;
+      }
+    } else if (labIdClaimRepository.updateLastUsedByLabIdAndPartnerId(labId, partnerId) > 0) {
+      log.debug("Found Claim for partnerId {} and labId {}", partnerId, labId);
+      return true;
+    }
+
+    return createClaim(partnerId, labId);
+  }
+
+  /**
+   * Creates the claim and increments the counter of the partner in one transaction. If nothing was inserted the
+   * LabId has been claimed (possibly concurrently) or the quota of the partner is exceeded.
+   */
+  private boolean createClaim(String partnerId, String labId) {
+    try {
+      ClaimResult result = transactionTemplate.execute(status -> insertClaim(status, partnerId, labId));
+
+      if (result == ClaimResult.NO_COUNTER) {
+        createCounter(partnerId);
+        result = transactionTemplate.execute(status -> insertClaim(status, partnerId, labId));
+      }
+
+      if (result == ClaimResult.CREATED) {
+        log.debug("Created new claim for Partner ID {} and Lab ID {}", partnerId, labId);
+        return true;
+      }
+    } catch (DataIntegrityViolationException e) {
+      log.debug("LabId {} has been claimed concurrently", labId);
+    }
+
     Optional<LabIdClaim> claim = labIdClaimRepository.findByLabId(labId);
 
-    if (claim.isPresent() && claim.get().getPartnerId().equals(partnerId)) {
-      log.debug("Found Claim for partnerId {} and labId {} with ID {}", partnerId, labId, claim.get().getId());
-      labIdClaimRepository.updateLastUsed(claim.get());
+    if (claim.isPresent()) {
+      labIdClaimCacheService.putClaim(claim.get());
+
+      if (!claim.get().getPartnerId().equals(partnerId)) {
+        log.debug("Found Claim for labId {} but for partner ID {} != {}", labId, claim.get().getPartnerId(),
+          partnerId);
+        return false;
+      }
       return true;
-    } else if (claim.isPresent()) {
-      log.debug("Found Claim for labId {} but for partner ID {} != {}", labId, claim.get().getPartnerId(), partnerId);
-      return false;
     }
 
-    log.debug("Could not find existing claim for labID {}", labId);
+    log.info("Partner with ID {} has exceeded labId limit", partnerId);
+    return false;
+  }
 
-    int claimsOfPartnerID = labIdClaimRepository.countByPartnerId(partnerId);
-    if (claimsOfPartnerID >= config.getLabIdClaim().getClaimsPerPartner()) {
-      log.info("Partner with ID {} has exceeded labId limit", partnerId);
-      return false;
+  private ClaimResult insertClaim(TransactionStatus status, String partnerId, String labId) {
+    if (labIdClaimCounterRepository.incrementClaims(partnerId, config.getLabIdClaim().getClaimsPerPartner()) == 0) {
+      return labIdClaimCounterRepository.existsById(partnerId) ? ClaimResult.NOT_CREATED : ClaimResult.NO_COUNTER;
     }
 
-    LabIdClaim newClaim = LabIdClaim.builder()
-      .labId(labId)
-      .partnerId(partnerId)
-      .build();
-
-    labIdClaimRepository.save(newClaim);
+    if (labIdClaimRepository.insertClaim(labId, partnerId, LocalDateTime.now()) == 0) {
+      // LabId is already claimed, do not count the claim.
+      status.setRollbackOnly();
+      return ClaimResult.NOT_CREATED;
+    }
 
-    log.debug("Created new claim for Partner ID {} and Lab ID {}", partnerId, labId);
+    return ClaimResult.CREATED;
+  }
 
-    return true;
+  private void createCounter(String partnerId) {
+    try {
+      labIdClaimCounterRepository.createCounter(partnerId);
+    } catch (DataIntegrityViolationException e) {
+      log.debug("Claim counter for partner ID {} has been created concurrently", partnerId);
+    }
   }
 
   /**
-   * Gets the amount of remaining LabId Claims a Partner can claim.
+   * Gets the amount of remaining LabId Claims a Partner can claim. Counters are created with the first new claim of a
+   * partner, until then the claims of the partner are counted.
    *
    * @param partnerId the partner Id
    * @return the amount of remaining claims.
    */
   public int getRemainingClaims(String partnerId) {
-    return config.getLabIdClaim().getClaimsPerPartner() - labIdClaimRepository.countByPartnerId(partnerId);
+    int claims = labIdClaimCounterRepository.findById(partnerId)
+      .map(LabIdClaimCounter::getClaims)
+      .orElseGet(() -> labIdClaimRepository.countByPartnerId(partnerId));
+
+    return config.getLabIdClaim().getClaimsPerPartner() - claims;
   }
 
   /**
@@ -97,4 +167,10 @@ public int getRemainingClaims(String partnerId) {
   public Optional<LabIdClaim> getClaimEntity(String labId) {
     return labIdClaimRepository.findByLabId(labId);
   }
+
+  private enum ClaimResult {
+    CREATED,
+    NOT_CREATED,
+    NO_COUNTER
+  }
 }
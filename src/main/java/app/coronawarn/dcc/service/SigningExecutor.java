@@ -0,0 +1,130 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.exception.DccServerException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executes calls to the Signing API with a limited number of concurrent calls and a limited number of waiting calls.
+ * If all slots are taken new calls are rejected immediately with HTTP Status 503.
+ *
+ * <p>The calling request thread blocks until the result is available, but at most for the configured signing timeout,
+ * afterwards the call is cancelled and HTTP Status 503 is returned. Because of the blocking wait, concurrency and
+ * queue capacity have to be sized below the maximum number of request threads of Tomcat, otherwise waiting calls
+ * could occupy all request threads.
+ */
+@Component
+@Slf4j
+public class SigningExecutor {
+
+  private final ThreadPoolExecutor executor;
+
+  private final long timeout;
+
+  /**
+   * Creates the executor with the configured concurrency and queue capacity.
+   *
+   * @param config            the application config
+   * @param meterRegistry     registry to publish executor metrics to
+   * @param maxRequestThreads maximum number of request threads of Tomcat
+   */
+  public SigningExecutor(DccApplicationConfig config, MeterRegistry meterRegistry,
+                         @Value("${server.tomcat.threads.max:200}") int maxRequestThreads) {
+    int maxWaitingCalls = config.getSigning().getConcurrency() + config.getSigning().getQueueCapacity();
+    if (maxWaitingCalls >= maxRequestThreads) {
+      log.warn("Signing concurrency and queue capacity ({}) exceed the request threads ({}), waiting signing calls"
+        + " can occupy all request threads.", maxWaitingCalls, maxRequestThreads);
+    }
+
+    timeout = config.getSigning().getTimeout();
+    executor = new ThreadPoolExecutor(
+      config.getSigning().getConcurrency(),
+      config.getSigning().getConcurrency(),
+      0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(config.getSigning().getQueueCapacity()),
+      new CustomizableThreadFactory("dcc-signing-"),
+      new ThreadPoolExecutor.AbortPolicy());
+
+    ExecutorServiceMetrics.monitor(meterRegistry, executor, "dcc_signing", Collections.emptyList());
+  }
+
+  /**
+   * Executes the given call on the signing executor and waits for its result up to the signing timeout.
+   *
+   * @param call the call to execute
+   * @param <T>  result type of the call
+   * @return the result of the call
+   * @throws DccServerException if the signing executor is saturated or the call did not finish within the timeout.
+   */
+  public <T> T execute(Callable<T> call) {
+    Future<T> future;
+    try {
+      future = executor.submit(call);
+    } catch (RejectedExecutionException e) {
+      log.warn("Rejected signing request, {} signing requests are already queued.", executor.getQueue().size());
+      throw new DccServerException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending signing requests.");
+    }
+
+    try {
+      return future.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      log.warn("Signing request did not finish within {}ms.", timeout);
+      throw new DccServerException(HttpStatus.SERVICE_UNAVAILABLE, "Signing request timed out.");
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new DccServerException(HttpStatus.SERVICE_UNAVAILABLE, "Signing request was interrupted.");
+    }
+  }
+
+  int getQueuedCalls() {
+    return executor.getQueue().size();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,116 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import java.util.Arrays;
+
+/**
+ * Reads the algorithm of a DER encoded X.509 SubjectPublicKeyInfo without parsing the key itself.
+ * SubjectPublicKeyInfo ::= SEQUENCE { algorithm SEQUENCE { algorithm OBJECT IDENTIFIER, parameters ANY }, ... }
+ */
+final class SubjectPublicKeyInfoReader {
+
+  static final String RSA = "RSA";
+  static final String EC = "EC";
+
+  private static final int TAG_SEQUENCE = 0x30;
+  private static final int TAG_OBJECT_IDENTIFIER = 0x06;
+
+  /**
+   * 1.2.840.113549.1.1.1 (rsaEncryption).
+   */
+  private static final byte[] OID_RSA = {0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x01};
+
+  /**
+   * 1.2.840.10045.2.1 (id-ecPublicKey).
+   */
+  private static final byte[] OID_EC = {0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x02, 0x01};
+
+  private static final int NOT_SUPPORTED = -1;
+
+  private SubjectPublicKeyInfoReader() {
+  }
+
+  /**
+   * Gets the KeyFactory algorithm of a SubjectPublicKeyInfo.
+   *
+   * @param subjectPublicKeyInfo the DER encoded SubjectPublicKeyInfo
+   * @return RSA, EC or null if the algorithm is not supported or the structure is malformed.
+   */
+  static String algorithm(byte[] subjectPublicKeyInfo) {
+    int position = 0;
+
+    // Enter the outer SubjectPublicKeyInfo and the AlgorithmIdentifier sequence
+    for (int i = 0; i < 2; i++) {
+      if (!hasTag(subjectPublicKeyInfo, position, TAG_SEQUENCE)) {
+        return null;
+      }
+      position = skipLength(subjectPublicKeyInfo, position + 1);
+      if (position == NOT_SUPPORTED) {
+        return null;
+      }
+    }
+
+    if (!hasTag(subjectPublicKeyInfo, position, TAG_OBJECT_IDENTIFIER) || position + 1 >= subjectPublicKeyInfo.length) {
+      return null;
+    }
+
+    // Object identifiers of key algorithms always use the short length form
+    int oidLength = subjectPublicKeyInfo[position + 1] & 0xFF;
+    position += 2;
+    if (oidLength >= 0x80 || position + oidLength > subjectPublicKeyInfo.length) {
+      return null;
+    }
+
+    if (Arrays.equals(subjectPublicKeyInfo, position, position + oidLength, OID_RSA, 0, OID_RSA.length)) {
+      return RSA;
+    } else if (Arrays.equals(subjectPublicKeyInfo, position, position + oidLength, OID_EC, 0, OID_EC.length)) {
+      return EC;
+    }
+    return null;
+  }
+
+  private static boolean hasTag(byte[] der, int position, int tag) {
+    return position < der.length && (der[position] & 0xFF) == tag;
+  }
+
+  /**
+   * Skips the DER length at the given position (short form or long form with up to 3 bytes).
+   *
+   * @return position of the content or NOT_SUPPORTED.
+   */
+  private static int skipLength(byte[] der, int position) {
+    if (position >= der.length) {
+      return NOT_SUPPORTED;
+    }
+
+    int first = der[position] & 0xFF;
+    if (first < 0x80) {
+      return position + 1;
+    }
+
+    int lengthBytes = first & 0x7F;
+    if (lengthBytes == 0 || lengthBytes > 3 || position + lengthBytes >= der.length) {
+      return NOT_SUPPORTED;
+    }
+    return position + 1 + lengthBytes;
+  }
+}
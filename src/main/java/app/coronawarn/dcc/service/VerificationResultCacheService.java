@@ -0,0 +1,124 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.service.DccRegistrationService.DccRegistrationException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.Optional;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process cache of test results received from Verification Server by RegistrationToken.
+ *
+ * <p>Only final test results are cached. RegistrationTokens rejected by Verification Server (403/404) are cached
+ * with a shorter time to live, so that retries of the CWA-App do not reach Verification Server again.
+ */
+@Service
+public class VerificationResultCacheService {
+
+  private final boolean enabled;
+
+  private final Cache<String, InternalTestResult> testResults;
+
+  private final Cache<String, DccRegistrationException.Reason> rejections;
+
+  /**
+   * Creates the caches with the configured size and time to live.
+   *
+   * @param config the application config
+   */
+  public VerificationResultCacheService(DccApplicationConfig config) {
+    DccApplicationConfig.VerificationResultCache cacheConfig = config.getVerificationResultCache();
+    enabled = cacheConfig.isEnabled();
+
+    testResults = Caffeine.newBuilder()
+      .maximumSize(cacheConfig.getMaximumSize())
+      .expireAfterWrite(Duration.ofMillis(cacheConfig.getTtl()))
+      .build();
+
+    rejections = Caffeine.newBuilder()
+      .maximumSize(cacheConfig.getMaximumSize())
+      .expireAfterWrite(Duration.ofMillis(cacheConfig.getNegativeTtl()))
+      .build();
+  }
+
+  /**
+   * Gets the cached test result.
+   *
+   * @param registrationToken the RegistrationToken of the test
+   * @return Optional containing the cached test result.
+   */
+  public Optional<InternalTestResult> getTestResult(String registrationToken) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(testResults.getIfPresent(registrationToken));
+  }
+
+  /**
+   * Puts a final test result into the cache.
+   *
+   * @param registrationToken the RegistrationToken of the test
+   * @param testResult        the test result received from Verification Server
+   */
+  public void putTestResult(String registrationToken, InternalTestResult testResult) {
+    if (enabled) {
+      testResults.put(registrationToken, testResult);
+    }
+  }
+
+  /**
+   * Gets the cached reason why Verification Server has rejected the RegistrationToken.
+   *
+   * @param registrationToken the RegistrationToken of the test
+   * @return Optional containing the cached reason.
+   */
+  public Optional<DccRegistrationException.Reason> getRejection(String registrationToken) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(rejections.getIfPresent(registrationToken));
+  }
+
+  /**
+   * Puts the reason why Verification Server has rejected the RegistrationToken into the cache.
+   *
+   * @param registrationToken the RegistrationToken of the test
+   * @param reason            the reason of the rejection
+   */
+  public void putRejection(String registrationToken, DccRegistrationException.Reason reason) {
+    if (enabled) {
+      rejections.put(registrationToken, reason);
+    }
+  }
+
+  /**
+   * Removes all cached test results and rejections.
+   */
+  public void invalidateAll() {
+    testResults.invalidateAll();
+    rejections.invalidateAll();
+  }
+}
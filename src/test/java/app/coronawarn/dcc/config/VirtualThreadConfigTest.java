@@ -0,0 +1,187 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.config;
+
+import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.model.RegistrationToken;
+import app.coronawarn.dcc.model.UploadPublicKeyRequest;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.utils.TestUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.Filter;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Uploads Public Keys through Tomcat with virtual threads enabled. The Verification Server is replaced by a local
+ * HTTP server, so the requests use the pooled Apache HttpClient of the Verification Server client.
+ */
+@SpringBootTest(
+  webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+  properties = {
+    "cwa.dcc.virtual-threads.enabled=true",
+    "cwa.dcc.virtual-threads.pinned-threshold=0",
+    "cwa.dcc.verification-server.connection-pool.max-per-route=2"
+  })
+@ActiveProfiles("external")
+public class VirtualThreadConfigTest {
+
+  private static final int REQUESTS = 16;
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private static final Set<Thread> requestThreads = ConcurrentHashMap.newKeySet();
+
+  private static HttpServer verificationServer;
+
+  private static ExecutorService verificationServerExecutor;
+
+  @Autowired
+  TestRestTemplate restTemplate;
+
+  @Autowired
+  DccRegistrationRepository dccRegistrationRepository;
+
+  @Autowired
+  VirtualThreadPinningMonitor virtualThreadPinningMonitor;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @BeforeAll
+  static void startVerificationServer() throws IOException {
+    verificationServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    verificationServerExecutor = Executors.newFixedThreadPool(REQUESTS);
+    verificationServer.setExecutor(verificationServerExecutor);
+    verificationServer.createContext("/version/v1/testresult", exchange -> {
+      RegistrationToken registrationToken =
+        objectMapper.readValue(exchange.getRequestBody(), RegistrationToken.class);
+
+      // Keeps the connections busy, so that requests have to wait for a connection of the pool
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      byte[] response = objectMapper.writeValueAsBytes(new InternalTestResult(
+        6, "labId", registrationToken.getRegistrationToken().replace("-", "").repeat(2), 0));
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      exchange.getResponseBody().write(response);
+      exchange.close();
+    });
+    verificationServer.start();
+  }
+
+  @AfterAll
+  static void stopVerificationServer() {
+    verificationServer.stop(0);
+    verificationServerExecutor.shutdown();
+  }
+
+  @DynamicPropertySource
+  static void verificationServerProperties(DynamicPropertyRegistry registry) {
+    registry.add("cwa.dcc.verification-server.base-url",
+      () -> "http://localhost:" + verificationServer.getAddress().getPort());
+  }
+
+  @BeforeEach
+  void setup() {
+    dccRegistrationRepository.deleteAll();
+    requestThreads.clear();
+  }
+
+  @Test
+  void testRequestsAreHandledOnVirtualThreads() throws Exception {
+    String publicKey = Base64.getEncoder().encodeToString(TestUtils.generateKeyPair().getPublic().getEncoded());
+
+    ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+    try {
+      List<Future<ResponseEntity<Void>>> responses = new ArrayList<>();
+      for (int i = 0; i < REQUESTS; i++) {
+        UploadPublicKeyRequest request = new UploadPublicKeyRequest(UUID.randomUUID().toString(), publicKey, null);
+        responses.add(executor.submit(() -> restTemplate.postForEntity("/version/v1/publicKey", request, Void.class)));
+      }
+
+      for (Future<ResponseEntity<Void>> response : responses) {
+        Assertions.assertEquals(HttpStatus.CREATED, response.get().getStatusCode());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assertions.assertEquals(REQUESTS, dccRegistrationRepository.count());
+    Assertions.assertFalse(requestThreads.isEmpty());
+    Assertions.assertTrue(requestThreads.stream().allMatch(Thread::isVirtual));
+
+    // Apache HttpClient 4 waits for a free pooled connection inside a synchronized block, which pins the virtual
+    // thread to its carrier thread. JFR streams the recorded events about once per second.
+    for (int i = 0; i < 100 && virtualThreadPinningMonitor.getPinnedCount() == 0; i++) {
+      Thread.sleep(100);
+    }
+    Assertions.assertTrue(virtualThreadPinningMonitor.getPinnedCount() > 0,
+      "Pinning while waiting for the Verification Server connection pool was not reported");
+    Assertions.assertEquals(virtualThreadPinningMonitor.getPinnedCount(),
+      meterRegistry.find("dcc.virtual.thread.pinned").timer().count());
+  }
+
+  @TestConfiguration
+  static class RequestThreadConfig {
+
+    /**
+     * Records the threads handling the requests.
+     */
+    @Bean
+    Filter requestThreadFilter() {
+      return (request, response, chain) -> {
+        requestThreads.add(Thread.currentThread());
+        chain.doFilter(request, response);
+      };
+    }
+  }
+}
@@ -43,6 +43,7 @@
 import app.coronawarn.dcc.domain.DccRegistration;
 import app.coronawarn.dcc.model.InternalTestResult;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
 import app.coronawarn.dcc.service.DccRegistrationService;
 import app.coronawarn.dcc.utils.TestUtils;
@@ -74,6 +75,9 @@ public class ExternalDccClaimControllerTest {
   @Autowired
   LabIdClaimRepository labIdClaimRepository;
 
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
   @Autowired
   DccRegistrationService dccRegistrationService;
 
@@ -87,6 +91,7 @@ public class ExternalDccClaimControllerTest {
   void setup() {
     dccRegistrationRepository.deleteAll();
     labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
 
     when(verificationServerClientMock.result(eq(registrationToken)))
       .thenReturn(new InternalTestResult(6, labId, testId, 0));
@@ -39,6 +39,7 @@
 import app.coronawarn.dcc.model.InternalTestResult;
 import app.coronawarn.dcc.model.UploadPublicKeyRequest;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
 import app.coronawarn.dcc.service.DccRegistrationService;
 import app.coronawarn.dcc.utils.TestUtils;
@@ -72,6 +73,9 @@ public class ExternalPublicKeyControllerTest {
   @Autowired
   LabIdClaimRepository labIdClaimRepository;
 
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
   @Autowired
   DccRegistrationService dccRegistrationService;
 
@@ -85,6 +89,7 @@ public class ExternalPublicKeyControllerTest {
   void setup() {
     dccRegistrationRepository.deleteAll();
     labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
 
     when(verificationServerClientMock.result(eq(registrationToken)))
       .thenReturn(new InternalTestResult(6, labId, testId, 0));
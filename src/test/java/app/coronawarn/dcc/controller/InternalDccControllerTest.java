@@ -36,29 +36,39 @@
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import app.coronawarn.dcc.client.SigningApiClient;
 import app.coronawarn.dcc.client.VerificationServerClient;
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.DccErrorReason;
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.model.DccBatchUploadRequest;
 import app.coronawarn.dcc.model.DccUploadRequest;
 import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.model.RegistrationToken;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
+import app.coronawarn.dcc.service.DccAsyncSigningService;
 import app.coronawarn.dcc.service.DccRegistrationService;
 import app.coronawarn.dcc.service.HashingService;
 import app.coronawarn.dcc.service.LabIdClaimService;
 import app.coronawarn.dcc.utils.TestUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import java.security.KeyPair;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -67,6 +77,7 @@
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -85,6 +96,9 @@ public class InternalDccControllerTest {
   @Autowired
   LabIdClaimRepository labIdClaimRepository;
 
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
   @Autowired
   LabIdClaimService labIdClaimService;
 
@@ -94,6 +108,15 @@ public class InternalDccControllerTest {
   @Autowired
   HashingService hashingService;
 
+  @Autowired
+  DccAsyncSigningService dccAsyncSigningService;
+
+  @Autowired
+  DccApplicationConfig config;
+
+  @Autowired
+  CircuitBreaker signingApiCircuitBreaker;
+
   @MockBean
   VerificationServerClient verificationServerClientMock;
 
@@ -104,6 +127,7 @@ public class InternalDccControllerTest {
   void setup() {
     dccRegistrationRepository.deleteAll();
     labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
 
     when(verificationServerClientMock.result(eq(registrationToken)))
       .thenReturn(new InternalTestResult(6, labId, testId, 0));
@@ -277,4 +301,190 @@ void testUploadDccFailedBadResponseFromSignignAPI5xx() throws Exception {
     Assertions.assertNull(dccRegistration.get().getDcc());
     Assertions.assertEquals(DccErrorReason.SIGNING_SERVER_ERROR, dccRegistration.get().getError());
   }
+
+  @Test
+  void testUploadDccBatch() throws Exception {
+    RegistrationToken registrationToken2 = new RegistrationToken("0".repeat(36));
+    String testId2 = "2".repeat(64);
+    String unknownTestId = "3".repeat(64);
+
+    when(verificationServerClientMock.result(eq(registrationToken2)))
+      .thenReturn(new InternalTestResult(6, labId, testId2, 0));
+
+    dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+    dccRegistrationService.createDccRegistration(
+      registrationToken2.getRegistrationToken(), TestUtils.generateKeyPair().getPublic());
+
+    DccUploadRequest dccUploadRequest = new DccUploadRequest(dccHash, encryptedDccBase64, encryptedDekBase64);
+    DccBatchUploadRequest batchUploadRequest = new DccBatchUploadRequest(Map.of(
+      testId, dccUploadRequest,
+      testId2, dccUploadRequest,
+      unknownTestId, dccUploadRequest));
+
+    mockMvc.perform(post("/version/v1/test/dcc/batch")
+      .contentType(MediaType.APPLICATION_JSON_VALUE)
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .content(new ObjectMapper().writeValueAsString(batchUploadRequest))
+    )
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.results.length()").value(equalTo(3)))
+      .andExpect(jsonPath("$.results." + testId + ".status").value(equalTo(200)))
+      .andExpect(jsonPath("$.results." + testId + ".partialDcc").value(equalTo(partialDccBase64)))
+      .andExpect(jsonPath("$.results." + testId2 + ".status").value(equalTo(200)))
+      .andExpect(jsonPath("$.results." + testId2 + ".partialDcc").value(equalTo(partialDccBase64)))
+      .andExpect(jsonPath("$.results." + unknownTestId + ".status").value(equalTo(404)));
+
+    verify(signingApiClientMock, times(2)).sign(eq(dccHashBase64), eq(hashingService.hash(labId)), anyString());
+
+    Assertions.assertEquals(partialDccBase64,
+      dccRegistrationRepository.findByHashedGuid(testId2).orElseThrow().getDcc());
+
+    // Second upload of the same DCC
+    mockMvc.perform(post("/version/v1/test/dcc/batch")
+      .contentType(MediaType.APPLICATION_JSON_VALUE)
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .content(new ObjectMapper().writeValueAsString(new DccBatchUploadRequest(Map.of(testId, dccUploadRequest))))
+    )
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.results." + testId + ".status").value(equalTo(409)));
+
+    // LabId claimed by other partner
+    mockMvc.perform(post("/version/v1/test/dcc/batch")
+      .contentType(MediaType.APPLICATION_JSON_VALUE)
+      .header(X_CWA_PARTNER_ID, "otherpartner")
+      .content(new ObjectMapper().writeValueAsString(new DccBatchUploadRequest(Map.of(testId, dccUploadRequest))))
+    )
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.results." + testId + ".status").value(equalTo(403)));
+  }
+
+  @Test
+  void testUploadDccAsync() throws Exception {
+    dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+    DccUploadRequest dccUploadRequest = new DccUploadRequest(dccHash, encryptedDccBase64, encryptedDekBase64);
+
+    config.getAsyncUpload().setEnabled(true);
+    try {
+      mockMvc.perform(post("/version/v1/test/" + testId + "/dcc")
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .header(X_CWA_PARTNER_ID, partnerId)
+        .param("async", "true")
+        .content(new ObjectMapper().writeValueAsString(dccUploadRequest))
+      )
+        .andExpect(status().isAccepted());
+
+      verify(signingApiClientMock, never()).sign(eq(dccHashBase64), eq(hashingService.hash(labId)), anyString());
+
+      mockMvc.perform(get("/version/v1/test/" + testId + "/dcc")
+        .header(X_CWA_PARTNER_ID, partnerId)
+      )
+        .andExpect(status().isAccepted());
+
+      dccAsyncSigningService.signPendingDcc();
+
+      verify(signingApiClientMock).sign(eq(dccHashBase64), eq(hashingService.hash(labId)), anyString());
+
+      mockMvc.perform(get("/version/v1/test/" + testId + "/dcc")
+        .header(X_CWA_PARTNER_ID, partnerId)
+      )
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.partialDcc").value(equalTo(partialDccBase64)));
+
+      DccRegistration dccRegistration = dccRegistrationRepository.findByHashedGuid(testId).orElseThrow();
+      Assertions.assertEquals(encryptedDccBase64, dccRegistration.getDccEncryptedPayload());
+      Assertions.assertEquals(encryptedDekBase64, dccRegistration.getEncryptedDataEncryptionKey());
+      Assertions.assertEquals(dccHash, dccRegistration.getDccHash());
+      Assertions.assertEquals(partnerId, dccRegistration.getPartnerId());
+    } finally {
+      config.getAsyncUpload().setEnabled(false);
+    }
+  }
+
+  @Test
+  void testUploadDccAsyncFailedSigning() throws Exception {
+    dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+    DccUploadRequest dccUploadRequest = new DccUploadRequest(dccHash, encryptedDccBase64, encryptedDekBase64);
+
+    doThrow(new FeignException.BadRequest("", dummyRequest, null, null))
+      .when(signingApiClientMock).sign(eq(dccHashBase64), eq(hashingService.hash(labId)), anyString());
+
+    config.getAsyncUpload().setEnabled(true);
+    try {
+      mockMvc.perform(post("/version/v1/test/" + testId + "/dcc")
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .header(X_CWA_PARTNER_ID, partnerId)
+        .param("async", "true")
+        .content(new ObjectMapper().writeValueAsString(dccUploadRequest))
+      )
+        .andExpect(status().isAccepted());
+
+      dccAsyncSigningService.signPendingDcc();
+
+      mockMvc.perform(get("/version/v1/test/" + testId + "/dcc")
+        .header(X_CWA_PARTNER_ID, partnerId)
+      )
+        .andExpect(status().isInternalServerError())
+        .andExpect(jsonPath("$.reason").value(equalTo(DccErrorReason.SIGNING_CLIENT_ERROR.toString())));
+
+      DccRegistration dccRegistration = dccRegistrationRepository.findByHashedGuid(testId).orElseThrow();
+      Assertions.assertNull(dccRegistration.getDccEncryptedPayload());
+      Assertions.assertNull(dccRegistration.getDccHash());
+    } finally {
+      config.getAsyncUpload().setEnabled(false);
+    }
+  }
+
+  @Test
+  void testUploadDccAsyncIsPostponedWhileSigningApiIsUnavailable() throws Exception {
+    dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+    DccUploadRequest dccUploadRequest = new DccUploadRequest(dccHash, encryptedDccBase64, encryptedDekBase64);
+
+    config.getAsyncUpload().setEnabled(true);
+    try {
+      mockMvc.perform(post("/version/v1/test/" + testId + "/dcc")
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .header(X_CWA_PARTNER_ID, partnerId)
+        .param("async", "true")
+        .content(new ObjectMapper().writeValueAsString(dccUploadRequest))
+      )
+        .andExpect(status().isAccepted());
+
+      // Circuit Breaker is open
+      signingApiCircuitBreaker.transitionToForcedOpenState();
+      try {
+        dccAsyncSigningService.signPendingDcc();
+      } finally {
+        signingApiCircuitBreaker.reset();
+      }
+      assertPostponed();
+
+      // Signing API answers with server error
+      doThrow(new FeignException.ServiceUnavailable("", dummyRequest, null, null))
+        .when(signingApiClientMock).sign(eq(dccHashBase64), eq(hashingService.hash(labId)), anyString());
+      dccAsyncSigningService.signPendingDcc();
+      assertPostponed();
+
+      // Signing API is available again
+      doReturn(partialDcc)
+        .when(signingApiClientMock).sign(eq(dccHashBase64), eq(hashingService.hash(labId)), anyString());
+      dccAsyncSigningService.signPendingDcc();
+
+      mockMvc.perform(get("/version/v1/test/" + testId + "/dcc")
+        .header(X_CWA_PARTNER_ID, partnerId)
+      )
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.partialDcc").value(equalTo(partialDccBase64)));
+    } finally {
+      config.getAsyncUpload().setEnabled(false);
+      signingApiCircuitBreaker.reset();
+    }
+  }
+
+  private void assertPostponed() {
+    DccRegistration dccRegistration = dccRegistrationRepository.findByHashedGuid(testId).orElseThrow();
+    Assertions.assertNull(dccRegistration.getError());
+    Assertions.assertNull(dccRegistration.getDcc());
+    Assertions.assertEquals(dccHash, dccRegistration.getDccHash());
+    Assertions.assertEquals(1, dccRegistrationRepository.findUnsigned(PageRequest.of(0, 10)).size());
+  }
 }
@@ -30,6 +30,7 @@
 
 import app.coronawarn.dcc.domain.LabIdClaim;
 import app.coronawarn.dcc.model.LabIdClaimRequest;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
 import app.coronawarn.dcc.service.LabIdClaimService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -56,6 +57,9 @@ public class InternalLabIdClaimControllerTest {
   @Autowired
   LabIdClaimRepository labIdClaimRepository;
 
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
   @Autowired
   LabIdClaimService labIdClaimService;
 
@@ -65,6 +69,7 @@ public class InternalLabIdClaimControllerTest {
   @BeforeEach
   void setup() {
     labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
   }
 
   @Test
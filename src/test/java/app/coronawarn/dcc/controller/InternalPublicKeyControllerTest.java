@@ -29,8 +29,12 @@
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import app.coronawarn.dcc.client.SigningApiClient;
@@ -39,12 +43,15 @@
 import app.coronawarn.dcc.model.InternalTestResult;
 import app.coronawarn.dcc.model.RegistrationToken;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
 import app.coronawarn.dcc.service.DccRegistrationService;
 import app.coronawarn.dcc.utils.TestUtils;
+import com.jayway.jsonpath.JsonPath;
 import java.security.KeyPair;
 import java.util.Base64;
 import java.util.UUID;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,6 +61,7 @@
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -69,6 +77,9 @@ public class InternalPublicKeyControllerTest {
   @Autowired
   LabIdClaimRepository labIdClaimRepository;
 
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
   @Autowired
   DccRegistrationService dccRegistrationService;
 
@@ -89,6 +100,7 @@ public class InternalPublicKeyControllerTest {
   void setup() {
     dccRegistrationRepository.deleteAll();
     labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
 
     when(verificationServerClientMock.result(eq(registrationToken)))
       .thenReturn(new InternalTestResult(6, labId, testId, 0));
@@ -144,6 +156,79 @@ void testDownloadPublicKeys() throws Exception {
       .andExpect(status().isForbidden());
   }
 
+  @Test
+  void testDownloadPublicKeysPaginated() throws Exception {
+    DccRegistration registration = dccRegistrationService.createDccRegistration(
+      registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+    dccRegistrationService.createDccRegistration(
+      registrationToken2.getRegistrationToken(), TestUtils.generateKeyPair().getPublic());
+    DccRegistration registration3 = dccRegistrationService.createDccRegistration(
+      registrationToken3.getRegistrationToken(), TestUtils.generateKeyPair().getPublic());
+
+    mockMvc.perform(get("/version/v1/publicKey/search/" + labId)
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .param("limit", "1")
+    )
+      .andExpect(status().isOk())
+      .andExpect(header().string("X-CWA-NEXT-CURSOR", String.valueOf(registration.getId())))
+      .andExpect(jsonPath("$.length()").value(equalTo(1)))
+      .andExpect(jsonPath("$[0].testId").value(equalTo(testId)));
 
+    mockMvc.perform(get("/version/v1/publicKey/search/" + labId)
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .param("cursor", String.valueOf(registration.getId()))
+      .param("limit", "1")
+    )
+      .andExpect(status().isOk())
+      .andExpect(header().string("X-CWA-NEXT-CURSOR", String.valueOf(registration3.getId())))
+      .andExpect(jsonPath("$.length()").value(equalTo(1)))
+      .andExpect(jsonPath("$[0].testId").value(equalTo(testId3)));
 
+    mockMvc.perform(get("/version/v1/publicKey/search/" + labId)
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .param("cursor", String.valueOf(registration3.getId()))
+      .param("limit", "1")
+    )
+      .andExpect(status().isOk())
+      .andExpect(header().doesNotExist("X-CWA-NEXT-CURSOR"))
+      .andExpect(jsonPath("$.length()").value(equalTo(0)));
+
+    mockMvc.perform(get("/version/v1/publicKey/search/" + labId)
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .param("limit", "0")
+    )
+      .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void testStreamPublicKeys() throws Exception {
+    DccRegistration registration = dccRegistrationService.createDccRegistration(
+      registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+    dccRegistrationService.createDccRegistration(
+      registrationToken2.getRegistrationToken(), TestUtils.generateKeyPair().getPublic());
+    DccRegistration registration3 = dccRegistrationService.createDccRegistration(
+      registrationToken3.getRegistrationToken(), TestUtils.generateKeyPair().getPublic());
+
+    MvcResult mvcResult = mockMvc.perform(get("/version/v1/publicKey/search/" + labId + "/stream")
+      .header(X_CWA_PARTNER_ID, partnerId)
+      .accept(MediaType.APPLICATION_NDJSON)
+    )
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    String[] lines = mockMvc.perform(asyncDispatch(mvcResult))
+      .andExpect(status().isOk())
+      .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+      .andReturn().getResponse().getContentAsString().split("\n");
+
+    Assertions.assertEquals(2, lines.length);
+    Assertions.assertEquals(registration.getDcci(), JsonPath.read(lines[0], "$.dcci"));
+    Assertions.assertEquals(registration3.getDcci(), JsonPath.read(lines[1], "$.dcci"));
+
+    mockMvc.perform(get("/version/v1/publicKey/search/" + labId + "/stream")
+      .header(X_CWA_PARTNER_ID, "otherPartnerId")
+      .accept(MediaType.APPLICATION_NDJSON)
+    )
+      .andExpect(status().isForbidden());
+  }
 }
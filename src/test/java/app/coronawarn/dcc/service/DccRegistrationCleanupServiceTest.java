@@ -26,9 +26,11 @@
 import static app.coronawarn.dcc.utils.TestValues.labId;
 import static app.coronawarn.dcc.utils.TestValues.partialDccBase64;
 import static app.coronawarn.dcc.utils.TestValues.partnerId;
+import static app.coronawarn.dcc.utils.TestValues.publicKeyBase64;
 import static app.coronawarn.dcc.utils.TestValues.registrationTokenValue;
 import static app.coronawarn.dcc.utils.TestValues.testId;
 
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.DccRegistration;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
 import jakarta.persistence.EntityManager;
@@ -36,6 +38,9 @@
 import jakarta.persistence.EntityTransaction;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -54,6 +59,9 @@ public class DccRegistrationCleanupServiceTest {
   @Autowired
   EntityManagerFactory entityManagerFactory;
 
+  @Autowired
+  DccApplicationConfig config;
+
   @BeforeEach
   void setup() {
     dccRegistrationRepository.deleteAll();
@@ -71,11 +79,12 @@ void testCleanupStage1() {
       partnerId,
       registrationTokenValue,
       "dcci",
-      "publicKey",
+      publicKeyBase64,
       encryptedDekBase64,
       dccHash,
       encryptedDccBase64,
       partialDccBase64,
+      partialDccBase64,
       null);
 
     dccRegistration = dccRegistrationRepository.save(dccRegistration);
@@ -85,7 +94,8 @@ void testCleanupStage1() {
     EntityTransaction transaction = entityManager.getTransaction();
     transaction.begin();
 
-    Assertions.assertEquals(1, entityManager.createQuery("UPDATE DccRegistration d SET d.updatedAt=:date WHERE d.id=:id")
+    Assertions.assertEquals(1, entityManager.createQuery(
+      "UPDATE DccRegistration d SET d.createdAt=:date, d.updatedAt=:date WHERE d.id=:id")
       .setParameter("date", LocalDateTime.now().minus(5, ChronoUnit.DAYS))
       .setParameter("id", dccRegistration.getId())
       .executeUpdate());
@@ -100,6 +110,7 @@ void testCleanupStage1() {
     Assertions.assertNull(dccRegistration.getEncryptedDataEncryptionKey());
     Assertions.assertNull(dccRegistration.getDccEncryptedPayload());
     Assertions.assertNull(dccRegistration.getDcc());
+    Assertions.assertNull(dccRegistration.getDownloadDcc());
     Assertions.assertNull(dccRegistration.getError());
     Assertions.assertNull(dccRegistration.getHashedGuid());
 
@@ -122,11 +133,12 @@ void testCleanupStage2() {
       partnerId,
       registrationTokenValue,
       "dcci",
-      "publicKey",
+      publicKeyBase64,
       encryptedDekBase64,
       dccHash,
       encryptedDccBase64,
       partialDccBase64,
+      partialDccBase64,
       null);
 
     dccRegistration = dccRegistrationRepository.save(dccRegistration);
@@ -153,6 +165,7 @@ void testCleanupStage2() {
     Assertions.assertNull(dccRegistration.getEncryptedDataEncryptionKey());
     Assertions.assertNull(dccRegistration.getDccEncryptedPayload());
     Assertions.assertNull(dccRegistration.getDcc());
+    Assertions.assertNull(dccRegistration.getDownloadDcc());
     Assertions.assertNull(dccRegistration.getError());
     Assertions.assertNull(dccRegistration.getHashedGuid());
     Assertions.assertNull(dccRegistration.getRegistrationToken());
@@ -175,11 +188,12 @@ void testCleanupStage3() {
       partnerId,
       registrationTokenValue,
       "dcci",
-      "publicKey",
+      publicKeyBase64,
       encryptedDekBase64,
       dccHash,
       encryptedDccBase64,
       partialDccBase64,
+      partialDccBase64,
       null);
 
     dccRegistration = dccRegistrationRepository.save(dccRegistration);
@@ -189,7 +203,8 @@ void testCleanupStage3() {
     EntityTransaction transaction = entityManager.getTransaction();
     transaction.begin();
 
-    Assertions.assertEquals(1, entityManager.createQuery("UPDATE DccRegistration d SET d.updatedAt=:date WHERE d.id=:id")
+    Assertions.assertEquals(1, entityManager.createQuery(
+      "UPDATE DccRegistration d SET d.createdAt=:date, d.updatedAt=:date WHERE d.id=:id")
       .setParameter("date", LocalDateTime.now().minus(181, ChronoUnit.DAYS))
       .setParameter("id", dccRegistration.getId())
       .executeUpdate());
@@ -201,4 +216,102 @@ void testCleanupStage3() {
     Assertions.assertTrue(dccRegistrationRepository.findById(dccRegistration.getId()).isEmpty());
   }
 
+  @Test
+  void testCleanupStage3IsSkippedIfPartitioned() {
+    DccRegistration dccRegistration = dccRegistrationRepository.save(new DccRegistration(
+      null,
+      0,
+      LocalDateTime.now(),
+      LocalDateTime.now(),
+      testId,
+      labId,
+      partnerId,
+      registrationTokenValue,
+      "dcci",
+      publicKeyBase64,
+      encryptedDekBase64,
+      dccHash,
+      encryptedDccBase64,
+      partialDccBase64,
+      partialDccBase64,
+      null));
+
+    // Manual Query to bypass OnUpdate method of entity
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    EntityTransaction transaction = entityManager.getTransaction();
+    transaction.begin();
+
+    Assertions.assertEquals(1, entityManager.createQuery(
+      "UPDATE DccRegistration d SET d.createdAt=:date, d.updatedAt=:date WHERE d.id=:id")
+      .setParameter("date", LocalDateTime.now().minus(181, ChronoUnit.DAYS))
+      .setParameter("id", dccRegistration.getId())
+      .executeUpdate());
+
+    transaction.commit();
+
+    config.getPartitioning().setEnabled(true);
+    try {
+      dccRegistrationCleanupService.cleanup();
+    } finally {
+      config.getPartitioning().setEnabled(false);
+    }
+
+    // Entity is deleted by dropping its partition, only its data is removed
+    dccRegistration = dccRegistrationRepository.findById(dccRegistration.getId()).orElseThrow();
+    Assertions.assertNull(dccRegistration.getPublicKey());
+    Assertions.assertNull(dccRegistration.getRegistrationToken());
+  }
+
+  @Test
+  void testCleanupChunked() {
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      DccRegistration dccRegistration = dccRegistrationRepository.save(new DccRegistration(
+        null,
+        0,
+        LocalDateTime.now(),
+        LocalDateTime.now(),
+        null,
+        labId,
+        partnerId,
+        UUID.randomUUID().toString(),
+        "dcci" + i,
+        publicKeyBase64,
+        encryptedDekBase64,
+        dccHash,
+        encryptedDccBase64,
+        partialDccBase64,
+        partialDccBase64,
+        null));
+      ids.add(dccRegistration.getId());
+    }
+
+    // Manual Query to bypass OnUpdate method of entity
+    EntityManager entityManager = entityManagerFactory.createEntityManager();
+    EntityTransaction transaction = entityManager.getTransaction();
+    transaction.begin();
+
+    Assertions.assertEquals(5, entityManager.createQuery(
+      "UPDATE DccRegistration d SET d.createdAt=:date, d.updatedAt=:date")
+      .setParameter("date", LocalDateTime.now().minus(5, ChronoUnit.DAYS))
+      .executeUpdate());
+
+    transaction.commit();
+
+    config.getCleanup().setChunkSize(2);
+    config.getCleanup().setChunkPause(0);
+    try {
+      dccRegistrationCleanupService.cleanup();
+    } finally {
+      config.getCleanup().setChunkSize(0);
+      config.getCleanup().setChunkPause(100);
+    }
+
+    for (Long id : ids) {
+      DccRegistration dccRegistration = dccRegistrationRepository.findById(id).orElseThrow();
+      Assertions.assertNull(dccRegistration.getPublicKey());
+      Assertions.assertNull(dccRegistration.getDcc());
+      Assertions.assertNotNull(dccRegistration.getRegistrationToken());
+    }
+  }
 }
@@ -26,33 +26,51 @@
 import static app.coronawarn.dcc.utils.TestValues.encryptedDek;
 import static app.coronawarn.dcc.utils.TestValues.labId;
 import static app.coronawarn.dcc.utils.TestValues.partialDcc;
+import static app.coronawarn.dcc.utils.TestValues.partialDccBase64;
 import static app.coronawarn.dcc.utils.TestValues.partnerId;
 import static app.coronawarn.dcc.utils.TestValues.registrationToken;
 import static app.coronawarn.dcc.utils.TestValues.registrationTokenValue;
 import static app.coronawarn.dcc.utils.TestValues.testId;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import app.coronawarn.dcc.client.VerificationServerClient;
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.DccErrorReason;
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.domain.DccRegistrationState;
+import app.coronawarn.dcc.domain.DccRegistrationStatus;
+import app.coronawarn.dcc.domain.PendingDccRegistration;
 import app.coronawarn.dcc.model.InternalTestResult;
 import app.coronawarn.dcc.model.RegistrationToken;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
 import app.coronawarn.dcc.utils.TestUtils;
 import feign.FeignException;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataAccessException;
 
 @SpringBootTest
 public class DccRegistrationServiceTest {
@@ -63,6 +81,9 @@ public class DccRegistrationServiceTest {
   @Autowired
   DccRegistrationRepository dccRegistrationRepository;
 
+  @Autowired
+  DccApplicationConfig config;
+
   @MockBean
   VerificationServerClient verificationServerClientMock;
 
@@ -161,6 +182,100 @@ void testCreateRegistrationVerificationServerError() throws NoSuchAlgorithmExcep
     Assertions.assertEquals(0, dccRegistrationRepository.count());
   }
 
+  @Test
+  void testCreateRegistrationAlreadyExistsWithoutVerificationServer() throws Exception {
+    when(verificationServerClientMock.result(eq(registrationToken)))
+      .thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+    dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey);
+
+    // Verification Server would now reject the RegistrationToken, but the existing registration takes precedence
+    when(verificationServerClientMock.result(eq(registrationToken)))
+      .thenReturn(new InternalTestResult(0, labId, testId, 0));
+
+    DccRegistrationService.DccRegistrationException e = Assertions.assertThrows(
+      DccRegistrationService.DccRegistrationException.class,
+      () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+
+    Assertions.assertEquals(
+      DccRegistrationService.DccRegistrationException.Reason.REGISTRATION_TOKEN_ALREADY_EXISTS, e.getReason());
+    verify(verificationServerClientMock, times(1)).result(eq(registrationToken));
+  }
+
+  @Test
+  void testConcurrentCreateRegistrationIsDeduplicated() throws Exception {
+    CountDownLatch verificationCalled = new CountDownLatch(1);
+    CountDownLatch verificationReleased = new CountDownLatch(1);
+    when(verificationServerClientMock.result(eq(registrationToken))).thenAnswer(invocation -> {
+      verificationCalled.countDown();
+      Assertions.assertTrue(verificationReleased.await(10, TimeUnit.SECONDS));
+      return new InternalTestResult(6, labId, testId, 0);
+    });
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+
+    CompletableFuture<DccRegistration> first = new CompletableFuture<>();
+    CompletableFuture<DccRegistration> second = new CompletableFuture<>();
+    Thread firstThread = createRegistrationThread(publicKey, first);
+    Thread secondThread = createRegistrationThread(publicKey, second);
+
+    firstThread.start();
+    Assertions.assertTrue(verificationCalled.await(10, TimeUnit.SECONDS));
+    secondThread.start();
+    while (secondThread.getState() != Thread.State.WAITING && !second.isDone()) {
+      Thread.sleep(10);
+    }
+    verificationReleased.countDown();
+
+    Assertions.assertEquals(
+      first.get(10, TimeUnit.SECONDS).getId(), second.get(10, TimeUnit.SECONDS).getId());
+    verify(verificationServerClientMock, times(1)).result(eq(registrationToken));
+    Assertions.assertEquals(1, dccRegistrationRepository.count());
+  }
+
+  @Test
+  void testConcurrentCreateRegistrationSharesUnexpectedFailure() throws Exception {
+    CountDownLatch verificationCalled = new CountDownLatch(1);
+    CountDownLatch verificationReleased = new CountDownLatch(1);
+    when(verificationServerClientMock.result(eq(registrationToken))).thenAnswer(invocation -> {
+      verificationCalled.countDown();
+      Assertions.assertTrue(verificationReleased.await(10, TimeUnit.SECONDS));
+      throw new IllegalStateException("unexpected");
+    });
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+
+    CompletableFuture<DccRegistration> first = new CompletableFuture<>();
+    CompletableFuture<DccRegistration> second = new CompletableFuture<>();
+    Thread firstThread = createRegistrationThread(publicKey, first);
+    Thread secondThread = createRegistrationThread(publicKey, second);
+
+    firstThread.start();
+    Assertions.assertTrue(verificationCalled.await(10, TimeUnit.SECONDS));
+    secondThread.start();
+    while (secondThread.getState() != Thread.State.WAITING && !second.isDone()) {
+      Thread.sleep(10);
+    }
+    verificationReleased.countDown();
+
+    // The waiting request gets the original exception instead of a CompletionException
+    ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(IllegalStateException.class, e.getCause());
+    Assertions.assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, dccRegistrationRepository.count());
+  }
+
+  private Thread createRegistrationThread(PublicKey publicKey, CompletableFuture<DccRegistration> result) {
+    return new Thread(() -> {
+      try {
+        result.complete(dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+      } catch (Exception e) {
+        result.completeExceptionally(e);
+      }
+    });
+  }
+
   @Test
   void testCreateRegistrationPending() throws NoSuchAlgorithmException {
     when(verificationServerClientMock.result(eq(registrationToken)))
@@ -211,7 +326,7 @@ void testFindPendingDcc() throws NoSuchAlgorithmException, DccRegistrationServic
     dccRegistrationService.createDccRegistration(registrationToken3, TestUtils.generateKeyPair().getPublic());
     dccRegistrationService.createDccRegistration(registrationToken4, TestUtils.generateKeyPair().getPublic());
 
-    List<DccRegistration> registrations = dccRegistrationService.findPendingDccByLabId(labId);
+    List<PendingDccRegistration> registrations = dccRegistrationService.findPendingDccByLabId(labId);
 
     Assertions.assertEquals(4, registrations.size());
     Assertions.assertEquals(testId, registrations.get(0).getHashedGuid());
@@ -264,6 +379,37 @@ void testFindByRegistrationToken() throws NoSuchAlgorithmException, DccRegistrat
     Assertions.assertEquals(registrationTokenValue, dccRegistrationService.findByRegistrationToken(registrationTokenValue).orElseThrow().getRegistrationToken());
   }
 
+  @Test
+  void testFindStateByRegistrationToken() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
+    when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
+    DccRegistration registration =
+      dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+
+    Assertions.assertEquals(DccRegistrationStatus.PENDING,
+      DccRegistrationStatus.of(dccRegistrationService.findStateByRegistrationToken(registrationTokenValue).orElseThrow()));
+
+    registration.setDccHash(dccHash);
+    registration = dccRegistrationRepository.save(registration);
+
+    Assertions.assertEquals(DccRegistrationStatus.GONE,
+      DccRegistrationStatus.of(dccRegistrationService.findStateByRegistrationToken(registrationTokenValue).orElseThrow()));
+
+    dccRegistrationService.setDcc(registration, partialDccBase64);
+    DccRegistrationState state = dccRegistrationService.findStateByRegistrationToken(registrationTokenValue).orElseThrow();
+
+    Assertions.assertEquals(registration.getId(), state.getId());
+    Assertions.assertEquals(DccRegistrationStatus.READY, DccRegistrationStatus.of(state));
+    Assertions.assertEquals(partialDccBase64, state.getDcc());
+    Assertions.assertEquals(registration.getEncryptedDataEncryptionKey(), state.getEncryptedDataEncryptionKey());
+
+    dccRegistrationService.setError(registration, DccErrorReason.SIGNING_SERVER_ERROR);
+    state = dccRegistrationService.findStateByRegistrationToken(registrationTokenValue).orElseThrow();
+
+    Assertions.assertEquals(DccErrorReason.SIGNING_SERVER_ERROR, state.getError());
+    Assertions.assertEquals(DccRegistrationStatus.ERROR, DccRegistrationStatus.of(state));
+    Assertions.assertTrue(dccRegistrationService.findStateByRegistrationToken("x".repeat(36)).isEmpty());
+  }
+
   @Test
   void testUpdateDccRegistration() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
     when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
@@ -320,6 +466,26 @@ void testDccRegistrationSetDcc() throws NoSuchAlgorithmException, DccRegistratio
     Assertions.assertEquals(Base64.getEncoder().encodeToString(partialDcc), registration.getDcc());
   }
 
+  @Test
+  void testDccRegistrationSetDccIsRolledBackIfNotificationFails() throws Exception {
+    when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
+    dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+
+    DccRegistration registration = dccRegistrationService.findByRegistrationToken(registrationTokenValue).orElseThrow();
+
+    // pg_notify does not exist in H2, so publishing the change fails
+    config.getClaimCache().getNotification().setEnabled(true);
+    try {
+      Assertions.assertThrows(DataAccessException.class, () -> dccRegistrationService.setDcc(
+        registration,
+        Base64.getEncoder().encodeToString(partialDcc)));
+    } finally {
+      config.getClaimCache().getNotification().setEnabled(false);
+    }
+
+    Assertions.assertNull(dccRegistrationService.findByRegistrationToken(registrationTokenValue).orElseThrow().getDcc());
+  }
+
   @Test
   void testParsePublicKey() throws NoSuchAlgorithmException {
     PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
@@ -329,6 +495,44 @@ void testParsePublicKey() throws NoSuchAlgorithmException {
     Assertions.assertEquals(publicKey, parsedPublicKey);
   }
 
+  @Test
+  void testParsePublicKeyConcurrently() throws Exception {
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+    String publicKeyBase64 = Base64.getEncoder().encodeToString(publicKey.getEncoded());
+
+    // More concurrent parsers than pooled KeyFactory instances
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      List<Future<PublicKey>> parsedPublicKeys = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        parsedPublicKeys.add(executor.submit(() -> dccRegistrationService.parsePublicKey(publicKeyBase64)));
+      }
+
+      for (Future<PublicKey> parsedPublicKey : parsedPublicKeys) {
+        Assertions.assertEquals(publicKey, parsedPublicKey.get());
+      }
+    }
+  }
+
+  @Test
+  void testParsePublicKeyEc() throws Exception {
+    KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+    keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+    PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+    PublicKey parsedPublicKey = dccRegistrationService.parsePublicKey(Base64.getEncoder().encodeToString(publicKey.getEncoded()));
+
+    Assertions.assertEquals(publicKey, parsedPublicKey);
+  }
+
+  @Test
+  void testParsePublicKeyUnsupportedAlgorithm() throws Exception {
+    PublicKey publicKey = KeyPairGenerator.getInstance("Ed25519").generateKeyPair().getPublic();
+
+    PublicKey parsedPublicKey = dccRegistrationService.parsePublicKey(Base64.getEncoder().encodeToString(publicKey.getEncoded()));
+
+    Assertions.assertNull(parsedPublicKey);
+  }
+
   @Test
   void testParsePublicKeyFail() {
     PublicKey parsedPublicKey = dccRegistrationService.parsePublicKey(Base64.getEncoder().encodeToString(encryptedDek));
@@ -0,0 +1,183 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import static app.coronawarn.dcc.utils.TestValues.dccHash;
+import static app.coronawarn.dcc.utils.TestValues.encryptedDccBase64;
+import static app.coronawarn.dcc.utils.TestValues.encryptedDekBase64;
+import static app.coronawarn.dcc.utils.TestValues.labId;
+import static app.coronawarn.dcc.utils.TestValues.partnerId;
+import static app.coronawarn.dcc.utils.TestValues.registrationToken;
+import static app.coronawarn.dcc.utils.TestValues.registrationTokenValue;
+import static app.coronawarn.dcc.utils.TestValues.testId;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import app.coronawarn.dcc.client.VerificationServerClient;
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.DccErrorReason;
+import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.domain.DccRegistrationStatus;
+import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.service.DccRegistrationStatusCacheService.Entry;
+import app.coronawarn.dcc.utils.TestUtils;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+@SpringBootTest(properties = "cwa.dcc.claim-cache.enabled=true")
+public class DccRegistrationStatusCacheServiceTest {
+
+  @Autowired
+  DccRegistrationStatusCacheService dccRegistrationStatusCacheService;
+
+  @Autowired
+  DccRegistrationService dccRegistrationService;
+
+  @Autowired
+  DccRegistrationRepository dccRegistrationRepository;
+
+  @MockBean
+  VerificationServerClient verificationServerClientMock;
+
+  @BeforeEach
+  void setup() {
+    dccRegistrationRepository.deleteAll();
+    dccRegistrationStatusCacheService.invalidateAll();
+  }
+
+  @Test
+  void testPendingAndGoneStatusAreCached() {
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.PENDING));
+    Assertions.assertEquals(
+      Optional.of(DccRegistrationStatus.PENDING), cachedStatus(dccRegistrationStatusCacheService));
+
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.GONE));
+    Assertions.assertEquals(
+      Optional.of(DccRegistrationStatus.GONE), cachedStatus(dccRegistrationStatusCacheService));
+  }
+
+  @Test
+  void testReadyAndErrorStatusAreNotCached() {
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.PENDING));
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.READY));
+    Assertions.assertTrue(dccRegistrationStatusCacheService.get(registrationTokenValue).isEmpty());
+
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.ERROR));
+    Assertions.assertTrue(dccRegistrationStatusCacheService.get(registrationTokenValue).isEmpty());
+  }
+
+  @Test
+  void testStatusIsInvalidatedOnUpdate() throws NoSuchAlgorithmException,
+    DccRegistrationService.DccRegistrationException {
+    when(verificationServerClientMock.result(eq(registrationToken)))
+      .thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    DccRegistration registration =
+      dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.of(registration)));
+    Assertions.assertEquals(
+      Optional.of(DccRegistrationStatus.PENDING), cachedStatus(dccRegistrationStatusCacheService));
+
+    dccRegistrationService.updateDccRegistration(
+      registration, dccHash, encryptedDccBase64, encryptedDekBase64, partnerId);
+
+    Assertions.assertTrue(dccRegistrationStatusCacheService.get(registrationTokenValue).isEmpty());
+  }
+
+  @Test
+  void testInvalidationDuringLoadIsNotLost() throws NoSuchAlgorithmException,
+    DccRegistrationService.DccRegistrationException {
+    when(verificationServerClientMock.result(eq(registrationToken)))
+      .thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    DccRegistration registration =
+      dccRegistrationService.createDccRegistration(registrationTokenValue, TestUtils.generateKeyPair().getPublic());
+
+    // Claim request starts loading the registration
+    long generation = dccRegistrationStatusCacheService.currentGeneration();
+    DccRegistrationStatus loadedStatus = DccRegistrationStatus.of(
+      dccRegistrationService.findStateByRegistrationToken(registrationTokenValue).orElseThrow());
+    Assertions.assertEquals(DccRegistrationStatus.PENDING, loadedStatus);
+
+    // DCC is uploaded before the loaded status is put into the cache
+    dccRegistrationService.updateDccRegistration(
+      registration, dccHash, encryptedDccBase64, encryptedDekBase64, partnerId);
+
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(loadedStatus), generation);
+    Assertions.assertTrue(dccRegistrationStatusCacheService.get(registrationTokenValue).isEmpty());
+
+    // A load started after the invalidation is cached again
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.PENDING),
+      dccRegistrationStatusCacheService.currentGeneration());
+    Assertions.assertEquals(
+      Optional.of(DccRegistrationStatus.PENDING), cachedStatus(dccRegistrationStatusCacheService));
+  }
+
+  @Test
+  void testInvalidateAllDuringLoadIsNotLost() {
+    long generation = dccRegistrationStatusCacheService.currentGeneration();
+    dccRegistrationStatusCacheService.invalidateAll();
+
+    dccRegistrationStatusCacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.PENDING), generation);
+    Assertions.assertTrue(dccRegistrationStatusCacheService.get(registrationTokenValue).isEmpty());
+  }
+
+  @Test
+  void testAllStatusAreCachedOnlyWhileNotificationsAreConnected() {
+    DccApplicationConfig config = new DccApplicationConfig();
+    config.getClaimCache().setEnabled(true);
+    config.getClaimCache().getNotification().setEnabled(true);
+    DccRegistrationStatusCacheService cacheService = new DccRegistrationStatusCacheService(config);
+
+    cacheService.put(registrationTokenValue, Entry.of(DccRegistrationStatus.PENDING));
+    Assertions.assertTrue(cacheService.get(registrationTokenValue).isEmpty());
+
+    cacheService.setNotificationConnected(true);
+    cacheService.put(registrationTokenValue, new Entry(
+      DccRegistrationStatus.READY, null, encryptedDekBase64, encryptedDccBase64));
+    Assertions.assertEquals(Optional.of(DccRegistrationStatus.READY), cachedStatus(cacheService));
+    Assertions.assertEquals(encryptedDccBase64, cacheService.get(registrationTokenValue).get().getDcc());
+
+    cacheService.put(registrationTokenValue, new Entry(
+      DccRegistrationStatus.ERROR, DccErrorReason.SIGNING_SERVER_ERROR, null, null));
+    Assertions.assertEquals(Optional.of(DccRegistrationStatus.ERROR), cachedStatus(cacheService));
+
+    // Connection lost
+    cacheService.setNotificationConnected(false);
+    Assertions.assertTrue(cacheService.get(registrationTokenValue).isEmpty());
+
+    // Reconnected, entries cached before the connection was lost must be gone
+    cacheService.setNotificationConnected(true);
+    Assertions.assertTrue(cacheService.get(registrationTokenValue).isEmpty());
+  }
+
+  private Optional<DccRegistrationStatus> cachedStatus(DccRegistrationStatusCacheService cacheService) {
+    return cacheService.get(registrationTokenValue).map(Entry::getStatus);
+  }
+}
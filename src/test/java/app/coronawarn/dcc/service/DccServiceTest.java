@@ -32,26 +32,36 @@
 import static app.coronawarn.dcc.utils.TestValues.testId;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import app.coronawarn.dcc.client.SigningApiClient;
 import app.coronawarn.dcc.client.VerificationServerClient;
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.DccErrorReason;
 import app.coronawarn.dcc.domain.DccRegistration;
+import app.coronawarn.dcc.exception.DccServerException;
 import app.coronawarn.dcc.model.InternalTestResult;
 import app.coronawarn.dcc.repository.DccRegistrationRepository;
 import app.coronawarn.dcc.utils.TestUtils;
+import com.upokecenter.cbor.CBORObject;
 import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.util.Base64;
+import java.util.List;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.codec.Hex;
 
 @SpringBootTest
@@ -69,9 +79,15 @@ public class DccServiceTest {
   @Autowired
   HashingService hashingService;
 
+  @Autowired
+  DccApplicationConfig config;
+
   @MockBean
   VerificationServerClient verificationServerClientMock;
 
+  @Autowired
+  CircuitBreaker signingApiCircuitBreaker;
+
   @MockBean
   SigningApiClient signingApiClient;
 
@@ -107,6 +123,44 @@ void testSigning() throws NoSuchAlgorithmException, DccRegistrationService.DccRe
     Assertions.assertArrayEquals(partialDcc, Base64.getDecoder().decode(registration.getDcc()));
   }
 
+  @Test
+  void testSigningPrecomputesDownloadDcc() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
+
+    when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
+    when(signingApiClient.sign(
+      eq(Base64.getEncoder().encodeToString(Hex.decode(dccHash))),
+      eq(hashingService.hash(labId)),
+      anyString()
+    )).thenReturn(partialDcc);
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+    DccRegistration registration = dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey);
+    DccRegistration updateDccRegistration = dccRegistrationService.updateDccRegistration(
+      registration,
+      dccHash,
+      Base64.getEncoder().encodeToString(encryptedDcc),
+      Base64.getEncoder().encodeToString(encryptedDek),
+      partnerId);
+
+    config.setPrecomputeDownloadDcc(true);
+    try {
+      Assertions.assertDoesNotThrow(() -> dccService.sign(updateDccRegistration));
+    } finally {
+      config.setPrecomputeDownloadDcc(false);
+    }
+
+    registration = dccRegistrationService.findByRegistrationToken(registrationTokenValue).orElseThrow();
+
+    String expectedDcc = Base64.getEncoder().encodeToString(
+      CBORObject.DecodeFromBytes(partialDcc)
+        .Set(2, CBORObject.FromObject(encryptedDcc))
+        .EncodeToBytes());
+
+    Assertions.assertNull(registration.getError());
+    Assertions.assertArrayEquals(partialDcc, Base64.getDecoder().decode(registration.getDcc()));
+    Assertions.assertEquals(expectedDcc, registration.getDownloadDcc());
+  }
+
   @Test
   void testSigningFailedBySigningApi4xx() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
 
@@ -236,4 +290,150 @@ void testSigningFailedOnFirstRequestButSuccessOnSecond() throws NoSuchAlgorithmE
     Assertions.assertArrayEquals(partialDcc, Base64.getDecoder().decode(registration.getDcc()));
   }
 
+  @Test
+  void testSigningFailsFastIfCircuitBreakerIsOpen() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
+
+    when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+    DccRegistration registration = dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey);
+    DccRegistration updatedDccRegistration = dccRegistrationService.updateDccRegistration(
+      registration,
+      dccHash,
+      Base64.getEncoder().encodeToString(encryptedDcc),
+      Base64.getEncoder().encodeToString(encryptedDek),
+      partnerId);
+
+    signingApiCircuitBreaker.transitionToForcedOpenState();
+    try {
+      DccService.DccGenerateException e =
+        Assertions.assertThrows(DccService.DccGenerateException.class, () -> dccService.sign(updatedDccRegistration));
+
+      Assertions.assertEquals(DccErrorReason.SIGNING_SERVER_ERROR, e.getReason());
+      verify(signingApiClient, never()).sign(any(), any(), any());
+    } finally {
+      signingApiCircuitBreaker.reset();
+    }
+
+    registration = dccRegistrationService.findByRegistrationToken(registrationTokenValue).orElseThrow();
+    Assertions.assertEquals(DccErrorReason.SIGNING_SERVER_ERROR, registration.getError());
+  }
+
+  @Test
+  void testSigningIsPostponedIfCircuitBreakerIsOpen() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
+
+    when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+    DccRegistration registration = dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey);
+    DccRegistration updatedDccRegistration = dccRegistrationService.updateDccRegistration(
+      registration,
+      dccHash,
+      Base64.getEncoder().encodeToString(encryptedDcc),
+      Base64.getEncoder().encodeToString(encryptedDek),
+      partnerId);
+
+    signingApiCircuitBreaker.transitionToForcedOpenState();
+    try {
+      DccServerException e =
+        Assertions.assertThrows(DccServerException.class, () -> dccService.sign(updatedDccRegistration, true));
+
+      Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getHttpStatus());
+      verify(signingApiClient, never()).sign(any(), any(), any());
+    } finally {
+      signingApiCircuitBreaker.reset();
+    }
+
+    // Registration is not marked as failed, the accepted DCC is signed in a later cycle
+    registration = dccRegistrationService.findByRegistrationToken(registrationTokenValue).orElseThrow();
+    Assertions.assertNull(registration.getError());
+  }
+
+  @Test
+  void testSigningIsNotRetriedOnClientError() throws NoSuchAlgorithmException, DccRegistrationService.DccRegistrationException {
+
+    when(verificationServerClientMock.result(eq(registrationToken))).thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    doThrow(new FeignException.BadRequest("", dummyRequest, null, null))
+      .when(signingApiClient).sign(anyString(), anyString(), anyString());
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+    DccRegistration registration = dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey);
+    DccRegistration updatedDccRegistration = dccRegistrationService.updateDccRegistration(
+      registration,
+      dccHash,
+      Base64.getEncoder().encodeToString(encryptedDcc),
+      Base64.getEncoder().encodeToString(encryptedDek),
+      partnerId);
+
+    DccService.DccGenerateException e =
+      Assertions.assertThrows(DccService.DccGenerateException.class, () -> dccService.sign(updatedDccRegistration));
+
+    Assertions.assertEquals(DccErrorReason.SIGNING_CLIENT_ERROR, e.getReason());
+    verify(signingApiClient, times(1)).sign(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  void testReplaceDccPayloadSpliceIsByteIdentical() {
+    byte[] taggedPartialDcc = CBORObject.FromObjectAndTag(CBORObject.DecodeFromBytes(partialDcc), 18).EncodeToBytes();
+
+    for (byte[] dcc : List.of(partialDcc, taggedPartialDcc)) {
+      for (int payloadLength : List.of(0, 5, 23, 24, 255, 256, 744)) {
+        byte[] newPayload = new byte[payloadLength];
+
+        CBORObject cbor = CBORObject.DecodeFromBytes(dcc);
+        cbor.set(2, CBORObject.FromObject(newPayload));
+
+        Assertions.assertArrayEquals(cbor.EncodeToBytes(), CosePayloadSplicer.splice(dcc, newPayload));
+        Assertions.assertEquals(
+          Base64.getEncoder().encodeToString(cbor.EncodeToBytes()),
+          dccService.replaceDccPayload(
+            Base64.getEncoder().encodeToString(dcc), Base64.getEncoder().encodeToString(newPayload)));
+      }
+    }
+  }
+
+  @Test
+  void testReplaceDccPayloadFallbackForUnsupportedEncoding() {
+    // COSE_Sign1 array with indefinite length
+    byte[] dcc = new byte[] {(byte) 0x9F, 0x40, (byte) 0xA0, 0x40, 0x40, (byte) 0xFF};
+    byte[] newPayload = new byte[] {1, 2, 3};
+
+    Assertions.assertNull(CosePayloadSplicer.splice(dcc, newPayload));
+
+    CBORObject cbor = CBORObject.DecodeFromBytes(dcc);
+    cbor.set(2, CBORObject.FromObject(newPayload));
+
+    Assertions.assertEquals(
+      Base64.getEncoder().encodeToString(cbor.EncodeToBytes()),
+      dccService.replaceDccPayload(
+        Base64.getEncoder().encodeToString(dcc), Base64.getEncoder().encodeToString(newPayload)));
+  }
+
+  @Test
+  void testReplaceDccPayloadFallbackForNonCanonicalEncoding() {
+    List<byte[]> dccs = List.of(
+      // length of the protected header not in its shortest form
+      new byte[] {(byte) 0x84, 0x58, 0x01, 0x01, (byte) 0xA0, 0x40, 0x40},
+      // unprotected header with two entries
+      new byte[] {(byte) 0x84, 0x40, (byte) 0xA2, 0x01, 0x01, 0x02, 0x02, 0x40, 0x40},
+      // unprotected header with a half precision float
+      new byte[] {(byte) 0x84, 0x40, (byte) 0xA1, 0x01, (byte) 0xF9, 0x3C, 0x00, 0x40, 0x40},
+      // unprotected header with a tagged value
+      new byte[] {(byte) 0x84, 0x40, (byte) 0xA1, 0x01, (byte) 0xC1, 0x01, 0x40, 0x40});
+    byte[] newPayload = new byte[] {1, 2, 3};
+
+    for (byte[] dcc : dccs) {
+      Assertions.assertNull(CosePayloadSplicer.splice(dcc, newPayload));
+
+      CBORObject cbor = CBORObject.DecodeFromBytes(dcc);
+      cbor.set(2, CBORObject.FromObject(newPayload));
+
+      Assertions.assertEquals(
+        Base64.getEncoder().encodeToString(cbor.EncodeToBytes()),
+        dccService.replaceDccPayload(
+          Base64.getEncoder().encodeToString(dcc), Base64.getEncoder().encodeToString(newPayload)));
+    }
+  }
+
 }
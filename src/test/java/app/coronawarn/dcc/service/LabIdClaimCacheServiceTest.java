@@ -0,0 +1,113 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import static app.coronawarn.dcc.utils.TestValues.labId;
+import static app.coronawarn.dcc.utils.TestValues.partnerId;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import app.coronawarn.dcc.domain.LabIdClaim;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
+import app.coronawarn.dcc.repository.LabIdClaimRepository;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+@SpringBootTest(properties = "cwa.dcc.lab-id-claim.cache.enabled=true")
+public class LabIdClaimCacheServiceTest {
+
+  @SpyBean
+  LabIdClaimRepository labIdClaimRepository;
+
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
+  @Autowired
+  LabIdClaimService labIdClaimService;
+
+  @Autowired
+  LabIdClaimCacheService labIdClaimCacheService;
+
+  @BeforeEach
+  void setup() {
+    labIdClaimCacheService.flush();
+    labIdClaimCacheService.invalidateAll();
+    labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
+  }
+
+  @Test
+  void testClaimIsCachedAndLastUsedIsFlushed() {
+    LabIdClaim claim = labIdClaimRepository.save(
+      new LabIdClaim(null, LocalDateTime.now(), LocalDateTime.now(), labId, partnerId));
+    claim.setLastUsed(LocalDateTime.now().minus(10, ChronoUnit.DAYS));
+    labIdClaimRepository.save(claim);
+
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+    }
+    Assertions.assertFalse(labIdClaimService.getClaim("otherPartner", labId));
+
+    verify(labIdClaimRepository, times(1)).findByLabId(labId);
+    verify(labIdClaimRepository, never()).updateLastUsed(ArgumentMatchers.any());
+    Assertions.assertTrue(labIdClaimRepository.findByLabId(labId).orElseThrow().getLastUsed()
+      .isBefore(LocalDateTime.now().minus(9, ChronoUnit.DAYS)));
+
+    labIdClaimCacheService.flush();
+
+    Assertions.assertTrue(labIdClaimRepository.findByLabId(labId).orElseThrow().getLastUsed()
+      .isAfter(LocalDateTime.now().minus(1, ChronoUnit.MINUTES)));
+  }
+
+  @Test
+  void testNewClaimIsCachedOnNextUsage() {
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+
+    verify(labIdClaimRepository, times(2)).findByLabId(labId);
+    Assertions.assertEquals(1, labIdClaimRepository.count());
+  }
+
+  @Test
+  void testClaimDeletedByOtherInstanceIsEvictedOnFlush() {
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+
+    // Cleanup of another instance deletes the claim without invalidating the cache of this instance
+    labIdClaimRepository.deleteAll();
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+
+    labIdClaimCacheService.flush();
+
+    Assertions.assertTrue(labIdClaimCacheService.getClaim(labId).isEmpty());
+    Assertions.assertTrue(labIdClaimService.getClaim("otherPartner", labId));
+    Assertions.assertEquals("otherPartner", labIdClaimRepository.findByLabId(labId).orElseThrow().getPartnerId());
+  }
+}
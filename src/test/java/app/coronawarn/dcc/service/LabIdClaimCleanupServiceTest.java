@@ -23,7 +23,9 @@
 import static app.coronawarn.dcc.utils.TestValues.labId;
 import static app.coronawarn.dcc.utils.TestValues.partnerId;
 
+import app.coronawarn.dcc.config.DccApplicationConfig;
 import app.coronawarn.dcc.domain.LabIdClaim;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
 import app.coronawarn.dcc.repository.LabIdClaimRepository;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -39,12 +41,22 @@ public class LabIdClaimCleanupServiceTest {
   @Autowired
   LabIdClaimRepository labIdClaimRepository;
 
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
   @Autowired
   LabIdClaimCleanupService labIdClaimCleanupService;
 
+  @Autowired
+  LabIdClaimService labIdClaimService;
+
+  @Autowired
+  DccApplicationConfig config;
+
   @BeforeEach
   void setup() {
     labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
   }
 
   @Test
@@ -71,4 +83,24 @@ void cleanupLabIdClaims() {
     Assertions.assertEquals("labId3", labIdClaimRepository.findAll().get(0).getLabId());
   }
 
+  @Test
+  void cleanupLabIdClaimsUpdatesClaimCounter() {
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertTrue(labIdClaimService.getClaim(partnerId, "labId" + i));
+    }
+    int claimsPerPartner = config.getLabIdClaim().getClaimsPerPartner();
+    Assertions.assertEquals(claimsPerPartner - 3, labIdClaimService.getRemainingClaims(partnerId));
+
+    for (int i = 0; i < 2; i++) {
+      LabIdClaim claim = labIdClaimRepository.findByLabId("labId" + i).orElseThrow();
+      claim.setLastUsed(LocalDateTime.now().minus(31, ChronoUnit.DAYS));
+      labIdClaimRepository.save(claim);
+    }
+
+    labIdClaimCleanupService.cleanup();
+
+    Assertions.assertEquals(1, labIdClaimRepository.count());
+    Assertions.assertEquals(claimsPerPartner - 1, labIdClaimService.getRemainingClaims(partnerId));
+  }
+
 }
@@ -0,0 +1,179 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import static app.coronawarn.dcc.utils.TestValues.labId;
+import static app.coronawarn.dcc.utils.TestValues.partnerId;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.domain.LabIdClaim;
+import app.coronawarn.dcc.repository.LabIdClaimCounterRepository;
+import app.coronawarn.dcc.repository.LabIdClaimRepository;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+public class LabIdClaimServiceTest {
+
+  private static final String partnerId2 = "22".repeat(32);
+
+  private static final int THREADS = 8;
+
+  @Autowired
+  LabIdClaimService labIdClaimService;
+
+  @Autowired
+  LabIdClaimRepository labIdClaimRepository;
+
+  @Autowired
+  LabIdClaimCounterRepository labIdClaimCounterRepository;
+
+  @Autowired
+  DccApplicationConfig config;
+
+  @BeforeEach
+  void setup() {
+    labIdClaimRepository.deleteAll();
+    labIdClaimCounterRepository.deleteAll();
+  }
+
+  @Test
+  void testConcurrentClaimsOfSameLabId() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2 * THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Boolean>> claims = new ArrayList<>();
+    List<Future<Boolean>> claims2 = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        claims.add(executor.submit(() -> {
+          start.await();
+          return labIdClaimService.getClaim(partnerId, labId);
+        }));
+        claims2.add(executor.submit(() -> {
+          start.await();
+          return labIdClaimService.getClaim(partnerId2, labId);
+        }));
+      }
+      start.countDown();
+
+      List<Boolean> results = new ArrayList<>();
+      for (Future<Boolean> claim : claims) {
+        results.add(claim.get());
+      }
+      List<Boolean> results2 = new ArrayList<>();
+      for (Future<Boolean> claim : claims2) {
+        results2.add(claim.get());
+      }
+
+      Assertions.assertEquals(1, labIdClaimRepository.count());
+      LabIdClaim claim = labIdClaimRepository.findByLabId(labId).orElseThrow();
+
+      // every request of the winning partner is successful, every request of the other partner is rejected
+      Assertions.assertEquals(claim.getPartnerId().equals(partnerId), results.stream().allMatch(r -> r));
+      Assertions.assertEquals(claim.getPartnerId().equals(partnerId), results.stream().anyMatch(r -> r));
+      Assertions.assertEquals(claim.getPartnerId().equals(partnerId2), results2.stream().allMatch(r -> r));
+      Assertions.assertEquals(claim.getPartnerId().equals(partnerId2), results2.stream().anyMatch(r -> r));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testConcurrentClaimsDoNotExceedQuota() throws Exception {
+    int claimsPerPartner = config.getLabIdClaim().getClaimsPerPartner();
+    config.getLabIdClaim().setClaimsPerPartner(5);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2 * THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Boolean>> claims = new ArrayList<>();
+
+    try {
+      for (int i = 0; i < 2 * THREADS; i++) {
+        String claimedLabId = "labId" + i;
+        claims.add(executor.submit(() -> {
+          start.await();
+          return labIdClaimService.getClaim(partnerId, claimedLabId);
+        }));
+      }
+      start.countDown();
+
+      int successful = 0;
+      for (Future<Boolean> claim : claims) {
+        successful += claim.get() ? 1 : 0;
+      }
+
+      Assertions.assertEquals(5, successful);
+      Assertions.assertEquals(5, labIdClaimRepository.count());
+      Assertions.assertEquals(0, labIdClaimService.getRemainingClaims(partnerId));
+    } finally {
+      executor.shutdownNow();
+      config.getLabIdClaim().setClaimsPerPartner(claimsPerPartner);
+    }
+  }
+
+  @Test
+  void testClaimIsRejectedWhenQuotaIsExceeded() {
+    int claimsPerPartner = config.getLabIdClaim().getClaimsPerPartner();
+    config.getLabIdClaim().setClaimsPerPartner(3);
+
+    try {
+      for (int i = 0; i < 3; i++) {
+        Assertions.assertTrue(labIdClaimService.getClaim(partnerId, "labId" + i));
+      }
+
+      Assertions.assertFalse(labIdClaimService.getClaim(partnerId, labId));
+      Assertions.assertTrue(labIdClaimService.getClaim(partnerId, "labId0"));
+      Assertions.assertTrue(labIdClaimService.getClaim(partnerId2, labId));
+      Assertions.assertEquals(4, labIdClaimRepository.count());
+      Assertions.assertEquals(0, labIdClaimService.getRemainingClaims(partnerId));
+      Assertions.assertEquals(2, labIdClaimService.getRemainingClaims(partnerId2));
+    } finally {
+      config.getLabIdClaim().setClaimsPerPartner(claimsPerPartner);
+    }
+  }
+
+  @Test
+  void testRemainingClaimsOfPartnerWithoutCounter() {
+    for (int i = 0; i < 3; i++) {
+      labIdClaimRepository.save(new LabIdClaim(null, LocalDateTime.now(), LocalDateTime.now(), "labId" + i, partnerId));
+    }
+    Assertions.assertFalse(labIdClaimCounterRepository.existsById(partnerId));
+
+    int claimsPerPartner = config.getLabIdClaim().getClaimsPerPartner();
+    Assertions.assertEquals(claimsPerPartner - 3, labIdClaimService.getRemainingClaims(partnerId));
+
+    // The counter created with the next claim starts with the existing claims
+    Assertions.assertTrue(labIdClaimService.getClaim(partnerId, labId));
+    Assertions.assertEquals(4, labIdClaimCounterRepository.findById(partnerId).orElseThrow().getClaims());
+    Assertions.assertEquals(claimsPerPartner - 4, labIdClaimService.getRemainingClaims(partnerId));
+  }
+}
@@ -0,0 +1,115 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import app.coronawarn.dcc.config.DccApplicationConfig;
+import app.coronawarn.dcc.exception.DccServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+public class SigningExecutorTest {
+
+  @Test
+  void testExecuteReturnsResult() {
+    SigningExecutor signingExecutor = new SigningExecutor(new DccApplicationConfig(), new SimpleMeterRegistry(), 200);
+
+    Assertions.assertEquals("result", signingExecutor.execute(() -> "result"));
+
+    signingExecutor.shutdown();
+  }
+
+  @Test
+  void testExecuteRethrowsRuntimeException() {
+    SigningExecutor signingExecutor = new SigningExecutor(new DccApplicationConfig(), new SimpleMeterRegistry(), 200);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> signingExecutor.execute(() -> {
+      throw new IllegalArgumentException();
+    }));
+
+    signingExecutor.shutdown();
+  }
+
+  @Test
+  void testExecuteIsRejectedIfQueueIsFull() throws Exception {
+    DccApplicationConfig config = new DccApplicationConfig();
+    config.getSigning().setConcurrency(1);
+    config.getSigning().setQueueCapacity(1);
+    SigningExecutor signingExecutor = new SigningExecutor(config, new SimpleMeterRegistry(), 200);
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> signingExecutor.execute(() -> {
+      started.countDown();
+      release.await();
+      return "running";
+    }));
+    Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> signingExecutor.execute(() -> "queued"));
+
+    // Wait until the second call occupies the only queue slot
+    for (int i = 0; i < 500 && signingExecutor.getQueuedCalls() < 1; i++) {
+      Thread.sleep(10);
+    }
+    Assertions.assertEquals(1, signingExecutor.getQueuedCalls());
+
+    DccServerException exception =
+      Assertions.assertThrows(DccServerException.class, () -> signingExecutor.execute(() -> "rejected"));
+    Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getHttpStatus());
+
+    release.countDown();
+    Assertions.assertEquals("running", running.get(5, TimeUnit.SECONDS));
+    Assertions.assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+
+    signingExecutor.shutdown();
+  }
+
+  @Test
+  void testExecuteTimesOut() throws Exception {
+    DccApplicationConfig config = new DccApplicationConfig();
+    config.getSigning().setTimeout(100);
+    SigningExecutor signingExecutor = new SigningExecutor(config, new SimpleMeterRegistry(), 200);
+
+    CountDownLatch interrupted = new CountDownLatch(1);
+
+    DccServerException exception = Assertions.assertThrows(DccServerException.class,
+      () -> signingExecutor.execute(() -> {
+        try {
+          Thread.sleep(10000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+        return "late";
+      }));
+    Assertions.assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getHttpStatus());
+
+    // The timed out call is cancelled and does not keep its slot
+    Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+    signingExecutor.shutdown();
+  }
+}
@@ -0,0 +1,124 @@
+/*-
+ * ---license-start
+ * Corona-Warn-App / cwa-dcc
+ * ---
+ * Copyright (C) 2020 - 2022 T-Systems International GmbH and all other contributors
+ * ---
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ---license-end
+ */
+
+package app.coronawarn.dcc.service;
+
+import static app.coronawarn.dcc.utils.TestValues.dummyRequest;
+import static app.coronawarn.dcc.utils.TestValues.labId;
+import static app.coronawarn.dcc.utils.TestValues.registrationToken;
+import static app.coronawarn.dcc.utils.TestValues.registrationTokenValue;
+import static app.coronawarn.dcc.utils.TestValues.testId;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import app.coronawarn.dcc.client.VerificationServerClient;
+import app.coronawarn.dcc.model.InternalTestResult;
+import app.coronawarn.dcc.repository.DccRegistrationRepository;
+import app.coronawarn.dcc.service.DccRegistrationService.DccRegistrationException;
+import app.coronawarn.dcc.utils.TestUtils;
+import feign.FeignException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+@SpringBootTest(properties = "cwa.dcc.verification-result-cache.enabled=true")
+public class VerificationResultCacheServiceTest {
+
+  @Autowired
+  VerificationResultCacheService verificationResultCacheService;
+
+  @Autowired
+  DccRegistrationService dccRegistrationService;
+
+  @Autowired
+  DccRegistrationRepository dccRegistrationRepository;
+
+  @MockBean
+  VerificationServerClient verificationServerClientMock;
+
+  @BeforeEach
+  void setup() {
+    dccRegistrationRepository.deleteAll();
+    verificationResultCacheService.invalidateAll();
+  }
+
+  @Test
+  void testRejectedRegistrationTokenIsCached() throws NoSuchAlgorithmException {
+    doThrow(new FeignException.NotFound("", dummyRequest, null, null))
+      .when(verificationServerClientMock).result(eq(registrationToken));
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+
+    for (int i = 0; i < 3; i++) {
+      DccRegistrationException e = Assertions.assertThrows(DccRegistrationException.class,
+        () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+      Assertions.assertEquals(DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_NOT_FOUND, e.getReason());
+    }
+
+    verify(verificationServerClientMock, times(1)).result(eq(registrationToken));
+  }
+
+  @Test
+  void testFinalTestResultIsCached() throws NoSuchAlgorithmException {
+    when(verificationServerClientMock.result(eq(registrationToken)))
+      .thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+
+    Assertions.assertDoesNotThrow(
+      () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+    dccRegistrationRepository.deleteAll();
+    Assertions.assertDoesNotThrow(
+      () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+
+    verify(verificationServerClientMock, times(1)).result(eq(registrationToken));
+  }
+
+  @Test
+  void testPendingTestResultAndServerErrorAreNotCached() throws NoSuchAlgorithmException {
+    when(verificationServerClientMock.result(eq(registrationToken)))
+      .thenReturn(new InternalTestResult(0, labId, testId, 0))
+      .thenThrow(new FeignException.InternalServerError("", dummyRequest, null, null))
+      .thenReturn(new InternalTestResult(6, labId, testId, 0));
+
+    PublicKey publicKey = TestUtils.generateKeyPair().getPublic();
+
+    DccRegistrationException e = Assertions.assertThrows(DccRegistrationException.class,
+      () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+    Assertions.assertEquals(DccRegistrationException.Reason.INVALID_REGISTRATION_TOKEN_FORBIDDEN, e.getReason());
+
+    e = Assertions.assertThrows(DccRegistrationException.class,
+      () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+    Assertions.assertEquals(DccRegistrationException.Reason.VERIFICATION_SERVER_ERROR, e.getReason());
+
+    Assertions.assertDoesNotThrow(
+      () -> dccRegistrationService.createDccRegistration(registrationTokenValue, publicKey));
+
+    verify(verificationServerClientMock, times(3)).result(eq(registrationToken));
+  }
+}
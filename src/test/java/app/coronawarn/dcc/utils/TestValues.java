@@ -37,6 +37,7 @@ public class TestValues {
   public static final String encryptedDccBase64 = Base64.getEncoder().encodeToString(encryptedDcc);
   public static final byte[] partialDcc = TestUtils.generatePartialDcc();
   public static final String partialDccBase64 = Base64.getEncoder().encodeToString(partialDcc);
+  public static final String publicKeyBase64 = Base64.getEncoder().encodeToString(new byte[]{11, 12, 13, 14, 15});
   public static final String dccHash = "b".repeat(64);
   public static final String dccHashBase64 = Base64.getEncoder().encodeToString(Hex.decode(dccHash));
   public static final String testId = "d".repeat(64);